@@ -0,0 +1,92 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.core.benchmark;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.util.AdaptiveHistogram;
+import net.openhft.chronicle.core.util.Histogram;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares sampling into a Histogram and an AdaptiveHistogram, with values from 1 to 1000 micro-seconds in nano-seconds.
+ */
+@State(Scope.Thread)
+public class AdaptiveHistogramBenchmark {
+    static final int VALUES = 1024;
+
+    final Histogram histogram = new Histogram();
+    final AdaptiveHistogram adaptiveHistogram = new AdaptiveHistogram();
+    final long[] values = new long[VALUES];
+    int index = 0;
+
+    {
+        long seed = 1;
+        for (int i = 0; i < VALUES; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            values[i] = (1_000L << ((seed >>> 33) % 10)) + ((seed >>> 40) & 1023);
+        }
+    }
+
+    public static void main(String... args) throws RunnerException, InvocationTargetException, IllegalAccessException {
+        if (Jvm.isDebug()) {
+            AdaptiveHistogramBenchmark main = new AdaptiveHistogramBenchmark();
+            for (Method m : AdaptiveHistogramBenchmark.class.getMethods()) {
+                if (m.getAnnotation(Benchmark.class) != null) {
+                    m.invoke(main);
+                }
+            }
+        } else {
+            int time = Boolean.getBoolean("longTest") ? 30 : 2;
+            System.out.println("measurementTime: " + time + " secs");
+            Options opt = new OptionsBuilder()
+                    .include(AdaptiveHistogramBenchmark.class.getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .forks(5)
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    long nextValue() {
+        return values[index++ & (VALUES - 1)];
+    }
+
+    @Benchmark
+    public int histogram() {
+        return histogram.sample(nextValue());
+    }
+
+    @Benchmark
+    public int adaptiveHistogram() {
+        return adaptiveHistogram.sample(nextValue());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.core.benchmark;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.time.BackgroundTimeProvider;
+import net.openhft.chronicle.core.time.CachedTimeProvider;
+import net.openhft.chronicle.core.time.SystemTimeProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the cost of reading the time from a CachedTimeProvider with the other providers.
+ * The ticker should be bound to a spare cpu with -Dcpu=N to busy wait, otherwise it parks between ticks.
+ * For the accuracy of each provider, see CachedTimeProviderMain in the tests.
+ */
+@State(Scope.Benchmark)
+public class CachedTimeProviderBenchmark {
+    final CachedTimeProvider cached = new CachedTimeProvider(CachedTimeProvider.SPIN_RESOLUTION_NS, Integer.getInteger("cpu", -1));
+
+    public static void main(String... args) throws RunnerException, InvocationTargetException, IllegalAccessException {
+        if (Jvm.isDebug()) {
+            CachedTimeProviderBenchmark main = new CachedTimeProviderBenchmark();
+            for (Method m : CachedTimeProviderBenchmark.class.getMethods()) {
+                if (m.getAnnotation(Benchmark.class) != null) {
+                    m.invoke(main);
+                }
+            }
+            main.tearDown();
+        } else {
+            int time = Boolean.getBoolean("longTest") ? 30 : 2;
+            System.out.println("measurementTime: " + time + " secs");
+            Options opt = new OptionsBuilder()
+                    .include(CachedTimeProviderBenchmark.class.getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .forks(5)
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cached.close();
+    }
+
+    @Benchmark
+    public long systemNanoTime() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public long systemCurrentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public long systemTimeProvider() {
+        return SystemTimeProvider.INSTANCE.currentTimeNanos();
+    }
+
+    @Benchmark
+    public long backgroundTimeProvider() {
+        return BackgroundTimeProvider.INSTANCE.currentTimeNanos();
+    }
+
+    @Benchmark
+    public long cachedTimeProvider() {
+        return cached.currentTimeNanos();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long cachedTimeProvider4Threads() {
+        return cached.currentTimeNanos();
+    }
+}
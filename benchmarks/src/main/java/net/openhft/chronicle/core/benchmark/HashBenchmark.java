@@ -0,0 +1,111 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.core.benchmark;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.Maths;
+import net.openhft.chronicle.core.OS;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares hashing a key one char at a time with hashing the same bytes eight at a time,
+ * on heap and off heap.
+ */
+@State(Scope.Benchmark)
+public class HashBenchmark {
+    @Param({"8", "32", "256"})
+    int length = 32;
+
+    String string;
+    StringBuilder builder;
+    byte[] bytes;
+    long address;
+
+    public static void main(String... args) throws RunnerException, InvocationTargetException, IllegalAccessException {
+        if (Jvm.isDebug()) {
+            HashBenchmark main = new HashBenchmark();
+            main.setUp();
+            for (Method m : HashBenchmark.class.getMethods()) {
+                if (m.getAnnotation(Benchmark.class) != null) {
+                    m.invoke(main);
+                }
+            }
+            main.tearDown();
+        } else {
+            int time = Boolean.getBoolean("longTest") ? 30 : 2;
+            System.out.println("measurementTime: " + time + " secs");
+            Options opt = new OptionsBuilder()
+                    .include(HashBenchmark.class.getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .forks(5)
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++)
+            sb.append((char) ('a' + i % 26));
+        string = sb.toString();
+        builder = sb;
+        bytes = string.getBytes(StandardCharsets.ISO_8859_1);
+        address = OS.memory().allocate(length);
+        OS.memory().copyMemory(bytes, 0, address, length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        OS.memory().freeMemory(address, length);
+    }
+
+    @Benchmark
+    public long hashCharSequence() {
+        return Maths.hash64((CharSequence) builder);
+    }
+
+    @Benchmark
+    public long hashString() {
+        return Maths.hash64(string);
+    }
+
+    @Benchmark
+    public long hashBytes() {
+        return Maths.hash64(bytes, 0, length);
+    }
+
+    @Benchmark
+    public long hashMemory() {
+        return Maths.hash64Memory(address, length);
+    }
+}
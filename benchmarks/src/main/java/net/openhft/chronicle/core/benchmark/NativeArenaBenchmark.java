@@ -0,0 +1,107 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.core.benchmark;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.Memory;
+import net.openhft.chronicle.core.NativeArena;
+import net.openhft.chronicle.core.OS;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares a NativeArena with going to malloc via Memory.allocate() for small buffers,
+ * allocating a batch of buffers and freeing them again on each call.
+ */
+@State(Scope.Benchmark)
+public class NativeArenaBenchmark {
+    static final int SIZE = 64;
+    static final int BATCH = 16;
+
+    final Memory memory = OS.memory();
+    final NativeArena arena = new NativeArena();
+    final ThreadLocal<long[]> addresses = ThreadLocal.withInitial(() -> new long[BATCH]);
+
+    public static void main(String... args) throws RunnerException, InvocationTargetException, IllegalAccessException {
+        if (Jvm.isDebug()) {
+            NativeArenaBenchmark main = new NativeArenaBenchmark();
+            for (Method m : NativeArenaBenchmark.class.getMethods()) {
+                if (m.getAnnotation(Benchmark.class) != null) {
+                    m.invoke(main);
+                }
+            }
+            main.tearDown();
+        } else {
+            int time = Boolean.getBoolean("longTest") ? 30 : 2;
+            System.out.println("measurementTime: " + time + " secs");
+            Options opt = new OptionsBuilder()
+                    .include(NativeArenaBenchmark.class.getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .forks(5)
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        arena.close();
+    }
+
+    @Benchmark
+    public void memoryAllocate() {
+        long[] addresses = this.addresses.get();
+        for (int i = 0; i < BATCH; i++)
+            addresses[i] = memory.allocate(SIZE);
+        for (int i = 0; i < BATCH; i++)
+            memory.freeMemory(addresses[i], SIZE);
+    }
+
+    @Benchmark
+    public void arenaAllocate() {
+        long[] addresses = this.addresses.get();
+        for (int i = 0; i < BATCH; i++)
+            addresses[i] = arena.allocate(SIZE);
+        for (int i = 0; i < BATCH; i++)
+            arena.freeMemory(addresses[i], SIZE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void memoryAllocate4Threads() {
+        memoryAllocate();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void arenaAllocate4Threads() {
+        arenaAllocate();
+    }
+}
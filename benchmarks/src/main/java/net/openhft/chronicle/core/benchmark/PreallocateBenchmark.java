@@ -0,0 +1,109 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.core.benchmark;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.OS;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Measures the latency of writing through a mapping of a sparse file grown with setLength,
+ * compared with a file preallocated with OS.preallocate. Each iteration starts with a new file
+ * so the first write to each page pays for any block allocation.
+ */
+@State(Scope.Thread)
+public class PreallocateBenchmark {
+    static final long SIZE = 256 << 20;
+    static final int MESSAGE = 256;
+
+    @Param({"false", "true"})
+    boolean preallocate = true;
+
+    File file;
+    RandomAccessFile raf;
+    long address;
+    long position;
+
+    public static void main(String... args) throws RunnerException, InvocationTargetException, IllegalAccessException, IOException {
+        if (Jvm.isDebug()) {
+            PreallocateBenchmark main = new PreallocateBenchmark();
+            main.setUp();
+            for (Method m : PreallocateBenchmark.class.getMethods()) {
+                if (m.getAnnotation(Benchmark.class) != null) {
+                    m.invoke(main);
+                }
+            }
+            main.tearDown();
+        } else {
+            int time = Boolean.getBoolean("longTest") ? 30 : 2;
+            System.out.println("measurementTime: " + time + " secs");
+            Options opt = new OptionsBuilder()
+                    .include(PreallocateBenchmark.class.getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .forks(5)
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        file = File.createTempFile("preallocate", ".deleteme", new File(OS.TARGET));
+        raf = new RandomAccessFile(file, "rw");
+        if (preallocate)
+            OS.preallocate(raf.getChannel(), 0, SIZE);
+        else
+            raf.setLength(SIZE);
+        address = OS.map(raf.getChannel(), FileChannel.MapMode.READ_WRITE, 0, SIZE);
+        position = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        OS.unmap(address, SIZE);
+        raf.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public void writeMessage() {
+        // wrap around rather than run off the end if the iteration is long enough.
+        if (position + MESSAGE > SIZE)
+            position = 0;
+        for (int i = 0; i < MESSAGE; i += 8)
+            OS.memory().writeLong(address + position + i, position);
+        position += MESSAGE;
+    }
+}
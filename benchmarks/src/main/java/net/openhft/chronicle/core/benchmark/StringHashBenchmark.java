@@ -0,0 +1,109 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.openhft.chronicle.core.benchmark;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.Maths;
+import net.openhft.chronicle.core.pool.StringHash;
+import net.openhft.chronicle.core.pool.StringInterner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the legacy and fast String hashes, and interning with each, for short and long keys.
+ */
+@State(Scope.Thread)
+public class StringHashBenchmark {
+    static final int KEYS = 64;
+
+    @Param({"8", "16", "32", "256"})
+    int length = 16;
+
+    final StringInterner legacyInterner = new StringInterner(1024, StringHash.LEGACY);
+    final StringInterner fastInterner = new StringInterner(1024, StringHash.FAST);
+    final StringBuilder[] keys = new StringBuilder[KEYS];
+    int next = 0;
+
+    public static void main(String... args) throws RunnerException, InvocationTargetException, IllegalAccessException {
+        if (Jvm.isDebug()) {
+            StringHashBenchmark main = new StringHashBenchmark();
+            main.setUp();
+            for (Method m : StringHashBenchmark.class.getMethods()) {
+                if (m.getAnnotation(Benchmark.class) != null) {
+                    m.invoke(main);
+                }
+            }
+        } else {
+            int time = Boolean.getBoolean("longTest") ? 30 : 2;
+            System.out.println("measurementTime: " + time + " secs");
+            Options opt = new OptionsBuilder()
+                    .include(StringHashBenchmark.class.getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .forks(5)
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        for (int k = 0; k < KEYS; k++) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(k).append('-');
+            while (sb.length() < length)
+                sb.append((char) ('a' + sb.length() % 26));
+            keys[k] = sb;
+        }
+    }
+
+    private StringBuilder nextKey() {
+        return keys[next++ & (KEYS - 1)];
+    }
+
+    @Benchmark
+    public long legacyHash() {
+        return Maths.hash64(nextKey());
+    }
+
+    @Benchmark
+    public long fastHash() {
+        return Maths.fastHash64(nextKey());
+    }
+
+    @Benchmark
+    public String legacyIntern() {
+        return legacyInterner.intern(nextKey());
+    }
+
+    @Benchmark
+    public String fastIntern() {
+        return fastInterner.intern(nextKey());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *     Copyright (C) 2015  higherfrequencytrading.com
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.openhft.chronicle.core.benchmark;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.time.PerThreadUniqueMicroTimeProvider;
+import net.openhft.chronicle.core.time.UniqueMicroTimeProvider;
+import net.openhft.chronicle.core.time.UniqueNanoTimeProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the CAS loop of the UniqueMicroTimeProvider with reserving a block of timestamps per thread,
+ * with one thread and with 16 threads contending.
+ */
+@State(Scope.Benchmark)
+public class UniqueTimeProviderBenchmark {
+    final UniqueMicroTimeProvider casLoop = new UniqueMicroTimeProvider();
+    final PerThreadUniqueMicroTimeProvider perThread = new PerThreadUniqueMicroTimeProvider();
+    final UniqueNanoTimeProvider nanos = new UniqueNanoTimeProvider();
+
+    public static void main(String... args) throws RunnerException, InvocationTargetException, IllegalAccessException {
+        if (Jvm.isDebug()) {
+            UniqueTimeProviderBenchmark main = new UniqueTimeProviderBenchmark();
+            for (Method m : UniqueTimeProviderBenchmark.class.getMethods()) {
+                if (m.getAnnotation(Benchmark.class) != null) {
+                    m.invoke(main);
+                }
+            }
+        } else {
+            int time = Boolean.getBoolean("longTest") ? 30 : 2;
+            System.out.println("measurementTime: " + time + " secs");
+            Options opt = new OptionsBuilder()
+                    .include(UniqueTimeProviderBenchmark.class.getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .forks(5)
+                    .mode(Mode.SampleTime)
+                    .measurementTime(TimeValue.seconds(time))
+                    .timeUnit(TimeUnit.NANOSECONDS)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Benchmark
+    public long casLoop() {
+        return casLoop.currentTimeMicros();
+    }
+
+    @Benchmark
+    public long perThread() {
+        return perThread.currentTimeMicros();
+    }
+
+    @Benchmark
+    public long uniqueNanos() {
+        return nanos.currentTimeNanos();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long casLoop16Threads() {
+        return casLoop.currentTimeMicros();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long perThread16Threads() {
+        return perThread.currentTimeMicros();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long uniqueNanos16Threads() {
+        return nanos.currentTimeNanos();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Grows a file in chunks, preallocated a set distance ahead of the position being written, so the writer finds
+ * the space already allocated rather than extending a sparse file one page at a time.
+ * <p>
+ * This is intended to be used by the single thread writing to the file.
+ */
+public class FileGrowthPolicy {
+    @NotNull
+    private final FileChannel fileChannel;
+    private final long chunkSize;
+    private final long ahead;
+    private long allocated;
+
+    /**
+     * @param fileChannel to grow
+     * @param chunkSize   the file is grown by a multiple of
+     * @param ahead       how far ahead of the write position to keep allocated
+     * @throws IOException if the size of the file couldn't be determined
+     */
+    public FileGrowthPolicy(@NotNull FileChannel fileChannel, long chunkSize, long ahead) throws IOException {
+        if (chunkSize <= 0 || ahead < 0)
+            throw new IllegalArgumentException("chunkSize: " + chunkSize + " must be positive and ahead: " + ahead + " must not be negative");
+        this.fileChannel = fileChannel;
+        this.chunkSize = chunkSize;
+        this.ahead = ahead;
+        this.allocated = fileChannel.size();
+    }
+
+    /**
+     * Called by the writer as it progresses.
+     *
+     * @param position written up to
+     * @return true if the file was grown
+     * @throws IOException if the file couldn't be grown
+     */
+    public boolean ensureCapacity(long position) throws IOException {
+        long required = position + ahead;
+        if (required <= allocated)
+            return false;
+        long end = (required + chunkSize - 1) / chunkSize * chunkSize;
+        OS.preallocate(fileChannel, allocated, end - allocated);
+        allocated = end;
+        return true;
+    }
+
+    /**
+     * @return the length of the file allocated so far.
+     */
+    public long allocated() {
+        return allocated;
+    }
+
+    public long chunkSize() {
+        return chunkSize;
+    }
+
+    public long ahead() {
+        return ahead;
+    }
+}
@@ -25,6 +25,8 @@ import org.jetbrains.annotations.Nullable;
 import sun.misc.Signal;
 import sun.misc.SignalHandler;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.ObjectName;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -32,6 +34,7 @@ import java.io.InputStream;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -493,6 +496,28 @@ public enum Jvm {
         return UnsafeMemory.INSTANCE.nativeMemoryUsed();
     }
 
+    /**
+     * @return The memory used by UnsafeMemory.allocate(long, MemoryTag) for each tag, sorted by tag name
+     */
+    @NotNull
+    public static Map<String, MemoryTag.Usage> usedNativeMemoryByTag() {
+        return MemoryTag.snapshot();
+    }
+
+    /**
+     * Register a {@link NativeMemoryMXBean} as chronicle:type=NativeMemory if not already registered.
+     */
+    public static void registerNativeMemoryMXBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new NativeMemory(), new ObjectName("chronicle:type=NativeMemory"));
+        } catch (InstanceAlreadyExistsException ignored) {
+            // already registered.
+        } catch (Exception e) {
+            Jvm.warn().on(Jvm.class, "Unable to register the NativeMemoryMXBean", e);
+        }
+    }
+
     public static long maxDirectMemory() {
         return MAX_DIRECT_MEMORY;
     }
@@ -796,6 +821,37 @@ public enum Jvm {
         return RESOURCE_TRACING;
     }
 
+    private static final class NativeMemory implements NativeMemoryMXBean {
+        @Override
+        public long getUsedNativeMemory() {
+            return usedNativeMemory();
+        }
+
+        @Override
+        public long getUsedDirectMemory() {
+            return usedDirectMemory();
+        }
+
+        @Override
+        public long getMaxDirectMemory() {
+            return maxDirectMemory();
+        }
+
+        @Override
+        public Map<String, Long> getUsedNativeMemoryByTag() {
+            Map<String, Long> map = new TreeMap<>();
+            usedNativeMemoryByTag().forEach((name, usage) -> map.put(name, usage.bytesUsed()));
+            return map;
+        }
+
+        @Override
+        public Map<String, Long> getNativeAllocationsByTag() {
+            Map<String, Long> map = new TreeMap<>();
+            usedNativeMemoryByTag().forEach((name, usage) -> map.put(name, usage.allocations()));
+            return map;
+        }
+    }
+
     private static class ChainedSignalHandler implements SignalHandler {
         final List<SignalHandler> handlers = new CopyOnWriteArrayList<>();
 
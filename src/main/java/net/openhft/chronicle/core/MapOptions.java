@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Options for {@link OS#map(java.nio.channels.FileChannel, java.nio.channels.FileChannel.MapMode, long, long, MapOptions)}
+ * <p>
+ * The advice is passed to madvise() on Linux and ignored where it is not supported.
+ */
+public final class MapOptions {
+    private boolean preTouch = false;
+    private boolean willNeed = false;
+    private boolean dontFork = false;
+    @NotNull
+    private Advice advice = Advice.NORMAL;
+
+    /**
+     * @param preTouch fault in every page of the mapping before returning, so the first access to each page doesn't.
+     */
+    @NotNull
+    public MapOptions preTouch(boolean preTouch) {
+        this.preTouch = preTouch;
+        return this;
+    }
+
+    public boolean preTouch() {
+        return preTouch;
+    }
+
+    /**
+     * @param willNeed ask the OS to read ahead the whole mapping in the background.
+     */
+    @NotNull
+    public MapOptions willNeed(boolean willNeed) {
+        this.willNeed = willNeed;
+        return this;
+    }
+
+    public boolean willNeed() {
+        return willNeed;
+    }
+
+    /**
+     * @param dontFork don't make the mapping available to a child process after a fork().
+     */
+    @NotNull
+    public MapOptions dontFork(boolean dontFork) {
+        this.dontFork = dontFork;
+        return this;
+    }
+
+    public boolean dontFork() {
+        return dontFork;
+    }
+
+    /**
+     * @param advice on how the mapping will be accessed.
+     */
+    @NotNull
+    public MapOptions advice(@NotNull Advice advice) {
+        this.advice = advice;
+        return this;
+    }
+
+    @NotNull
+    public Advice advice() {
+        return advice;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "MapOptions{" +
+                "preTouch=" + preTouch +
+                ", willNeed=" + willNeed +
+                ", dontFork=" + dontFork +
+                ", advice=" + advice +
+                '}';
+    }
+
+    public enum Advice {
+        NORMAL(PosixCalls.MADV_NORMAL),
+        SEQUENTIAL(PosixCalls.MADV_SEQUENTIAL),
+        RANDOM(PosixCalls.MADV_RANDOM);
+
+        final int madvise;
+
+        Advice(int madvise) {
+            this.madvise = madvise;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core;
+
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Faults in the pages of a mapping in a background thread, keeping a distance ahead of the position the writer
+ * has reached, so the writing thread doesn't take the page faults.
+ * <p>
+ * The mapping must not be unmapped until this has been closed.
+ */
+public class MappedPreToucher extends AbstractCloseable {
+    private static final long PAUSE_NANOS = 100_000;
+    // pages touched before checking the write position again.
+    private static final int BATCH_PAGES = 64;
+
+    private final long address;
+    private final long size;
+    private final long ahead;
+    private final boolean write;
+    private final AtomicLong writePosition = new AtomicLong();
+    @NotNull
+    private final Thread thread;
+    private volatile long touchedPosition = 0;
+
+    /**
+     * @param name    of the thread
+     * @param address of the start of the mapping
+     * @param size    of the mapping
+     * @param ahead   how far ahead of the write position to touch
+     * @param write   whether the pages will be written to, if false they are only read
+     */
+    public MappedPreToucher(@NotNull String name, long address, long size, long ahead, boolean write) {
+        this.address = address;
+        this.size = size;
+        this.ahead = ahead;
+        this.write = write;
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Called by the writer as it progresses. This doesn't wake the pre-toucher to keep it cheap.
+     *
+     * @param position relative to the start of the mapping
+     */
+    public void writePosition(long position) {
+        writePosition.lazySet(position);
+    }
+
+    /**
+     * @return how far into the mapping has been touched.
+     */
+    public long touchedPosition() {
+        return touchedPosition;
+    }
+
+    void run() {
+        int pageSize = OS.pageSize();
+        long touched = 0;
+        while (!isClosed()) {
+            long target = Math.min(size, OS.pageAlign(writePosition.get() + ahead));
+            if (touched >= target) {
+                LockSupport.parkNanos(PAUSE_NANOS);
+                continue;
+            }
+            long length = Math.min(target - touched, (long) BATCH_PAGES * pageSize);
+            OS.preTouch(address + touched, length, write);
+            touched += length;
+            touchedPosition = touched;
+        }
+    }
+
+    @Override
+    protected void performClose() {
+        // wait for the thread to stop touching before the mapping can be released.
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core;
+
+import net.openhft.chronicle.core.io.AbstractReferenceCounted;
+import net.openhft.chronicle.core.io.ReferenceOwner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A region of a file mapped into memory by a {@link MappedRegionCache}. The region is unmapped once the cache and
+ * every owner which reserved it have released it.
+ */
+public final class MappedRegion extends AbstractReferenceCounted {
+    @NotNull
+    private final File file;
+    @NotNull
+    private final FileChannel.MapMode mode;
+    private final long offset;
+    private final long size;
+    private final long address;
+    // the cache holding this, told when only its reference is left, or null once evicted.
+    @Nullable
+    private volatile MappedRegionCache cache;
+
+    MappedRegion(@Nullable MappedRegionCache cache, @NotNull File file, @NotNull FileChannel.MapMode mode, long offset, long size, long address) {
+        this.cache = cache;
+        this.file = file;
+        this.mode = mode;
+        this.offset = offset;
+        this.size = size;
+        this.address = address;
+    }
+
+    @NotNull
+    public File file() {
+        return file;
+    }
+
+    @NotNull
+    public FileChannel.MapMode mode() {
+        return mode;
+    }
+
+    /**
+     * @return the offset in the file of the start of the region
+     */
+    public long offset() {
+        return offset;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the address of the start of the region, valid only while this has been reserved.
+     */
+    public long address() {
+        return address;
+    }
+
+    @Override
+    public void release(ReferenceOwner id) throws IllegalStateException {
+        super.release(id);
+        MappedRegionCache cache = this.cache;
+        if (cache != null && refCount() == 1)
+            cache.unused(this);
+    }
+
+    void evicted() {
+        cache = null;
+    }
+
+    @Override
+    protected void performRelease() {
+        try {
+            OS.unmap(address, size);
+        } catch (IOException e) {
+            Jvm.warn().on(MappedRegion.class, "Error on unmap of " + this, e);
+        }
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "MappedRegion{" +
+                "file=" + file +
+                ", mode=" + mode +
+                ", offset=" + offset +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core;
+
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import net.openhft.chronicle.core.io.ReferenceOwner;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reuses mappings of the same region of a file, keyed by the file, offset, size and mode.
+ * <p>
+ * The cache holds one reference to each region it contains. When the bytes mapped exceed the budget, the least
+ * recently used regions no one else has reserved are evicted and unmapped. Regions still reserved are kept, so the
+ * budget can be exceeded while they are in use, and regions are evicted again as owners release them. Once a
+ * region is evicted, it is unmapped when the last owner releases it.
+ */
+public class MappedRegionCache extends AbstractCloseable {
+    private final long maxMappedBytes;
+    // in access order so the eldest is the least recently used.
+    private final LinkedHashMap<Key, MappedRegion> regions = new LinkedHashMap<>(16, 0.75f, true);
+    private long mappedBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxMappedBytes the budget for the regions in the cache.
+     */
+    public MappedRegionCache(long maxMappedBytes) {
+        this.maxMappedBytes = maxMappedBytes;
+    }
+
+    /**
+     * Reserve a region of a file for an owner, mapping it if it is not already mapped.
+     * The owner must release the region when it has finished with it.
+     *
+     * @param file    the channel is for
+     * @param channel to map
+     * @param mode    of access
+     * @param offset  within the file, which must be aligned to {@link OS#mapAlignment()}
+     * @param size    of the region
+     * @param owner   reserving the region
+     * @return the region reserved.
+     * @throws IOException           if the region could not be mapped
+     * @throws IllegalStateException if this cache is closed
+     */
+    @NotNull
+    public synchronized MappedRegion acquire(@NotNull File file,
+                                             @NotNull FileChannel channel,
+                                             @NotNull FileChannel.MapMode mode,
+                                             long offset,
+                                             long size,
+                                             @NotNull ReferenceOwner owner) throws IOException, IllegalStateException {
+        throwExceptionIfClosed();
+        Key key = new Key(file.getAbsoluteFile(), mode, offset, size);
+        MappedRegion region = regions.get(key);
+        if (region != null) {
+            // the cache holds a reference so this can't have been released.
+            region.reserve(owner);
+            hits++;
+            return region;
+        }
+        misses++;
+        long address = OS.map(channel, mode, offset, size);
+        region = new MappedRegion(this, key.file, mode, offset, size, address);
+        region.reserve(owner);
+        regions.put(key, region);
+        mappedBytes += size;
+        evictUnused(maxMappedBytes);
+        return region;
+    }
+
+    private void evictUnused(long budget) {
+        for (Iterator<MappedRegion> iter = regions.values().iterator(); mappedBytes > budget && iter.hasNext(); ) {
+            MappedRegion region = iter.next();
+            if (region.refCount() > 1)
+                continue;
+            iter.remove();
+            mappedBytes -= region.size();
+            evictions++;
+            region.evicted();
+            region.release(ReferenceOwner.INIT);
+        }
+    }
+
+    /**
+     * Called when a region is left with only the cache's reference, so it can be evicted if over budget.
+     */
+    synchronized void unused(@NotNull MappedRegion region) {
+        if (!isClosed() && mappedBytes > maxMappedBytes)
+            evictUnused(maxMappedBytes);
+    }
+
+    /**
+     * Evict every region not reserved by an owner.
+     */
+    public synchronized void evictAllUnused() {
+        evictUnused(0);
+    }
+
+    public synchronized long mappedBytes() {
+        return mappedBytes;
+    }
+
+    public long maxMappedBytes() {
+        return maxMappedBytes;
+    }
+
+    public synchronized int regionCount() {
+        return regions.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    @Override
+    protected synchronized void performClose() {
+        for (MappedRegion region : regions.values()) {
+            region.evicted();
+            region.release(ReferenceOwner.INIT);
+        }
+        regions.clear();
+        mappedBytes = 0;
+    }
+
+    static final class Key {
+        @NotNull
+        final File file;
+        @NotNull
+        final FileChannel.MapMode mode;
+        final long offset;
+        final long size;
+
+        Key(@NotNull File file, @NotNull FileChannel.MapMode mode, long offset, long size) {
+            this.file = file;
+            this.mode = mode;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return offset == key.offset &&
+                    size == key.size &&
+                    file.equals(key.file) &&
+                    mode.equals(key.mode);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) Maths.hash64(file.hashCode() * 31L + mode.hashCode(), offset * 31 + size);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package net.openhft.chronicle.core;
 
 import net.openhft.chronicle.core.util.StringUtils;
 import org.jetbrains.annotations.NotNull;
+import sun.misc.Unsafe;
 
 import java.util.Arrays;
 
@@ -35,6 +36,8 @@ public enum Maths {
     private static final int M1 = 0xea7585d7;
     private static final int M2 = 0x7a646e19;
     private static final int M3 = 0x855dd4db;
+    // the coder of a compact String or StringBuilder
+    private static final byte LATIN1 = 0;
     @NotNull
     static long[] TENS = new long[19];
     @NotNull
@@ -321,6 +324,134 @@ public enum Maths {
         return agitate(hash);
     }
 
+    /**
+     * A hash of the text which reads eight Latin-1 chars at a time, or four chars otherwise. For a Java 9+
+     * compact String or StringBuilder the backing byte[] is hashed directly.
+     * <p>
+     * The hash is defined as {@link #hash64(byte[], int, int)} of the text encoded as ISO-8859-1 if every char
+     * is below 256, otherwise encoded as UTF-16LE, so it is the same across JVM versions and platforms.
+     * It is not the same as {@link #hash64(CharSequence)}
+     *
+     * @param cs to hash
+     * @return hash value.
+     */
+    public static long fastHash64(@NotNull CharSequence cs) {
+        if (Jvm.isJava9Plus()) {
+            if (cs instanceof String) {
+                String s = (String) cs;
+                if (StringUtils.getStringCoder(s) == LATIN1)
+                    return hashBytes64(StringUtils.extractBytes(s), Unsafe.ARRAY_BYTE_BASE_OFFSET, s.length());
+            } else if (cs instanceof StringBuilder) {
+                StringBuilder sb = (StringBuilder) cs;
+                if (StringUtils.getStringCoder(sb) == LATIN1)
+                    return hashBytes64(StringUtils.extractBytes(sb), Unsafe.ARRAY_BYTE_BASE_OFFSET, sb.length());
+            }
+        }
+        return hashChars64(cs);
+    }
+
+    public static int fastHash32(@NotNull CharSequence cs) {
+        long h = fastHash64(cs);
+        h ^= h >> 32;
+        return (int) h;
+    }
+
+    /**
+     * Hash a region of native memory, eight bytes at a time. This gives the same result as
+     * {@link #hash64(byte[], int, int)} for the same bytes on or off heap, on any platform.
+     * <p>
+     * Note: {@link #hash64(long, long)} hashes a pair of 64-bit values.
+     *
+     * @param address of the first byte
+     * @param length  in bytes
+     * @return hash value.
+     */
+    public static long hash64Memory(long address, long length) {
+        return hashBytes64(null, address, length);
+    }
+
+    /**
+     * Hash a range of a byte[], eight bytes at a time. This gives the same result as
+     * {@link #hash64Memory(long, long)} for the same bytes.
+     *
+     * @param bytes  to hash
+     * @param offset of the first byte
+     * @param length in bytes
+     * @return hash value.
+     */
+    public static long hash64(@NotNull byte[] bytes, int offset, int length) {
+        if ((offset | length) < 0 || offset > bytes.length - length)
+            throw new ArrayIndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", bytes.length: " + bytes.length);
+        return hashBytes64(bytes, (long) Unsafe.ARRAY_BYTE_BASE_OFFSET + offset, length);
+    }
+
+    static long hashBytes64(Object base, long offset, long length) {
+        long h0 = length * K0;
+        long h1 = Long.rotateLeft(h0, 32);
+        long i = 0;
+        // two independent lanes of eight bytes each
+        for (; i <= length - 16; i += 16) {
+            h0 = mix(h0, readLongLE(base, offset + i), M0, M1);
+            h1 = mix(h1, readLongLE(base, offset + i + 8), M2, M3);
+        }
+        if (i <= length - 8) {
+            h0 = mix(h0, readLongLE(base, offset + i), M0, M1);
+            i += 8;
+        }
+        if (i < length) {
+            long tail = 0;
+            for (int shift = 0; i < length; i++, shift += 8)
+                tail |= (UnsafeMemory.UNSAFE.getByte(base, offset + i) & 0xFFL) << shift;
+            h1 = mix(h1, tail, M2, M3);
+        }
+        return agitate(h0 * M3 + Long.rotateLeft(h1, 32) * M0);
+    }
+
+    /**
+     * The same hash as hashBytes64 of the Latin-1 bytes if every char is below 256, otherwise of the UTF-16LE bytes.
+     */
+    static long hashChars64(@NotNull CharSequence cs) {
+        int len = cs.length();
+        int bits = 8;
+        for (int i = 0; i < len; i++) {
+            if (cs.charAt(i) > 0xFF) {
+                bits = 16;
+                break;
+            }
+        }
+        int perWord = 64 / bits;
+        long h0 = (long) len * (bits / 8) * K0;
+        long h1 = Long.rotateLeft(h0, 32);
+        int i = 0;
+        for (; i <= len - 2 * perWord; i += 2 * perWord) {
+            h0 = mix(h0, packChars(cs, i, perWord, bits), M0, M1);
+            h1 = mix(h1, packChars(cs, i + perWord, perWord, bits), M2, M3);
+        }
+        if (i <= len - perWord) {
+            h0 = mix(h0, packChars(cs, i, perWord, bits), M0, M1);
+            i += perWord;
+        }
+        if (i < len)
+            h1 = mix(h1, packChars(cs, i, len - i, bits), M2, M3);
+        return agitate(h0 * M3 + Long.rotateLeft(h1, 32) * M0);
+    }
+
+    private static long packChars(@NotNull CharSequence cs, int from, int count, int bits) {
+        long word = 0;
+        for (int j = 0; j < count; j++)
+            word |= (long) cs.charAt(from + j) << (j * bits);
+        return word;
+    }
+
+    private static long mix(long h, long word, int m0, int m1) {
+        return Long.rotateLeft(h * m0 + word * m1, 29);
+    }
+
+    private static long readLongLE(Object base, long offset) {
+        long l = UnsafeMemory.UNSAFE.getLong(base, offset);
+        return UnsafeMemory.LITTLE_ENDIAN ? l : Long.reverseBytes(l);
+    }
+
     /**
      * Returns rounded down log<sub>2</sub>{@code num}, e. g.: {@code intLog2(1) == 0},
      * {@code intLog2(2) == 1}, {@code intLog2(7) == 2}, {@code intLog2(8) == 3}, etc.
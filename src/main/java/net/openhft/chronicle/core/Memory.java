@@ -41,6 +41,25 @@ public interface Memory {
 
     long allocate(long capacity) throws IllegalArgumentException, OutOfMemoryError;
 
+    /**
+     * Allocate native memory attributing its usage to a tag. It must be freed with the same tag.
+     * By default the tag is ignored, for implementations which don't track tags.
+     *
+     * @param capacity to allocate
+     * @param tag      to attribute the memory to
+     * @return the address of the memory
+     */
+    default long allocate(long capacity, MemoryTag tag) throws IllegalArgumentException, OutOfMemoryError {
+        return allocate(capacity);
+    }
+
+    default void freeMemory(long address, long size, MemoryTag tag) {
+        freeMemory(address, size);
+    }
+
+    /**
+     * @return the native memory allocated and not freed, tagged or not.
+     */
     long nativeMemoryUsed();
 
     void writeByte(long address, byte i8);
@@ -107,6 +126,52 @@ public interface Memory {
 
     void copyMemory(long fromAddress, Object obj2, long offset2, int length);
 
+    /**
+     * @return true if the <code>length</code> bytes at both addresses are the same.
+     */
+    boolean equals(long addressA, long addressB, long length);
+
+    /**
+     * @return true if the <code>length</code> bytes from <code>bytes[offset]</code> are the same as those at the address.
+     */
+    boolean equals(byte[] bytes, int offset, long address, int length);
+
+    /**
+     * Compare the bytes as unsigned values in lexicographic order.
+     *
+     * @return a negative number, zero or a positive number as the bytes at addressA are less than, equal to or
+     * greater than the bytes at addressB.
+     */
+    int compare(long addressA, long addressB, long length);
+
+    /**
+     * Compare the bytes as unsigned values in lexicographic order.
+     *
+     * @return a negative number, zero or a positive number as the bytes from <code>bytes[offset]</code> are less
+     * than, equal to or greater than the bytes at the address.
+     */
+    int compare(byte[] bytes, int offset, long address, int length);
+
+    /**
+     * @return the index of the first byte which differs, or -1 if the <code>length</code> bytes are the same.
+     */
+    long mismatch(long addressA, long addressB, long length);
+
+    /**
+     * @return the index of the first byte which differs, or -1 if the <code>length</code> bytes are the same.
+     */
+    int mismatch(byte[] bytes, int offset, long address, int length);
+
+    /**
+     * @return the index of the first occurrence of <code>b</code> relative to the address, or -1 if not found.
+     */
+    long indexOf(long address, long length, byte b);
+
+    /**
+     * @return the index of the first occurrence of <code>b</code> relative to the offset, or -1 if not found.
+     */
+    int indexOf(byte[] bytes, int offset, int length, byte b);
+
     void writeOrderedLong(long address, long i);
 
     void writeOrderedLong(Object object, long offset, long i);
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A label for native memory allocated via {@link Memory#allocate(long, MemoryTag)} so the memory used can be
+ * attributed to the component which allocated it.
+ * <p>
+ * The counters are striped across cells so concurrent allocations in different threads don't contend on one
+ * cache line. Reading them sums the cells, so it is much more expensive than updating them.
+ */
+public final class MemoryTag {
+    private static final Map<String, MemoryTag> TAGS = new ConcurrentHashMap<>();
+
+    @NotNull
+    private final String name;
+    private final LongAdder bytesUsed = new LongAdder();
+    private final LongAdder allocations = new LongAdder();
+
+    private MemoryTag(@NotNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param name of the tag
+     * @return the tag for this name, creating it if needed.
+     */
+    @NotNull
+    public static MemoryTag of(@NotNull String name) {
+        return TAGS.computeIfAbsent(name, MemoryTag::new);
+    }
+
+    /**
+     * @return the bytes used by all tags.
+     */
+    public static long totalBytesUsed() {
+        long total = 0;
+        for (MemoryTag tag : TAGS.values())
+            total += tag.bytesUsed();
+        return total;
+    }
+
+    /**
+     * @return a snapshot of the usage of every tag, sorted by name.
+     */
+    @NotNull
+    public static Map<String, Usage> snapshot() {
+        Map<String, Usage> map = new TreeMap<>();
+        for (MemoryTag tag : TAGS.values())
+            map.put(tag.name, tag.usage());
+        return map;
+    }
+
+    void allocated(long bytes) {
+        bytesUsed.add(bytes);
+        allocations.increment();
+    }
+
+    void freed(long bytes) {
+        bytesUsed.add(-bytes);
+        allocations.decrement();
+    }
+
+    @NotNull
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the bytes currently allocated and not freed with this tag.
+     */
+    public long bytesUsed() {
+        return bytesUsed.sum();
+    }
+
+    /**
+     * @return the number of allocations not yet freed with this tag.
+     */
+    public long allocations() {
+        return allocations.sum();
+    }
+
+    @NotNull
+    public Usage usage() {
+        return new Usage(name, bytesUsed(), allocations());
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public static final class Usage {
+        private final String name;
+        private final long bytesUsed;
+        private final long allocations;
+
+        Usage(String name, long bytesUsed, long allocations) {
+            this.name = name;
+            this.bytesUsed = bytesUsed;
+            this.allocations = allocations;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public long bytesUsed() {
+            return bytesUsed;
+        }
+
+        public long allocations() {
+            return allocations;
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return "Usage{" +
+                    "name='" + name + '\'' +
+                    ", bytesUsed=" + bytesUsed +
+                    ", allocations=" + allocations +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core;
+
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A size-classed slab allocator which carves fixed size blocks out of large chunks of native memory.
+ * <p>
+ * Block sizes are powers of two from {@value #MIN_BLOCK_SIZE} bytes up to the <code>maxBlockSize</code>.
+ * Freed blocks are kept on a free list local to the thread which freed them, spilling to a list shared
+ * by all threads when it gets too long, so the common allocate/free path is neither synchronized nor
+ * touches the global native memory counter.
+ * <p>
+ * The chunks are obtained from {@link Memory#allocate(long)}, or {@link Memory#allocate(long, MemoryTag)} if a
+ * tag is given, so they are reported by {@link Memory#nativeMemoryUsed()}. Closing the arena releases every chunk
+ * in one go, whether or not the individual blocks have been freed, after which any address allocated from it must
+ * not be used.
+ */
+public class NativeArena extends AbstractCloseable {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    public static final int DEFAULT_MAX_BLOCK_SIZE = 64 << 10;
+    public static final int MIN_BLOCK_SIZE = 16;
+    private static final int MIN_BLOCK_SIZE_BITS = 4;
+    // the number of free blocks a thread holds per size class before giving half back.
+    private static final int LOCAL_FREE_LIMIT = 64;
+    private static final int BATCH_SIZE = LOCAL_FREE_LIMIT / 2;
+
+    @NotNull
+    private final Memory memory;
+    private final int chunkSize;
+    private final int maxBlockSize;
+    @Nullable
+    private final MemoryTag tag;
+    @NotNull
+    private final SizeClass[] sizeClasses;
+    private final ThreadLocal<LocalFreeLists> localFreeLists;
+    private long[] chunks = new long[16];
+    private int chunkCount = 0;
+
+    public NativeArena() {
+        this(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_BLOCK_SIZE);
+    }
+
+    /**
+     * @param chunkSize    of each chunk obtained from native memory, a power of two.
+     * @param maxBlockSize the largest block which can be allocated, a power of two no larger than the chunkSize.
+     * @throws IllegalArgumentException if the sizes are not valid.
+     */
+    public NativeArena(int chunkSize, int maxBlockSize) throws IllegalArgumentException {
+        this(chunkSize, maxBlockSize, null);
+    }
+
+    /**
+     * @param chunkSize    of each chunk obtained from native memory, a power of two.
+     * @param maxBlockSize the largest block which can be allocated, a power of two no larger than the chunkSize.
+     * @param tag          to attribute the chunks to, or null for untagged.
+     * @throws IllegalArgumentException if the sizes are not valid.
+     */
+    public NativeArena(int chunkSize, int maxBlockSize, @Nullable MemoryTag tag) throws IllegalArgumentException {
+        if (!Maths.isPowerOf2(chunkSize) || !Maths.isPowerOf2(maxBlockSize))
+            throw new IllegalArgumentException("chunkSize: " + chunkSize + " and maxBlockSize: " + maxBlockSize + " must be powers of 2");
+        if (maxBlockSize < MIN_BLOCK_SIZE || maxBlockSize > chunkSize)
+            throw new IllegalArgumentException("maxBlockSize: " + maxBlockSize + " must be between " + MIN_BLOCK_SIZE + " and the chunkSize: " + chunkSize);
+        this.memory = OS.memory();
+        this.chunkSize = chunkSize;
+        this.maxBlockSize = maxBlockSize;
+        this.tag = tag;
+        int classes = Maths.intLog2(maxBlockSize) - MIN_BLOCK_SIZE_BITS + 1;
+        sizeClasses = new SizeClass[classes];
+        for (int i = 0; i < classes; i++)
+            sizeClasses[i] = new SizeClass(MIN_BLOCK_SIZE << i);
+        localFreeLists = ThreadLocal.withInitial(() -> new LocalFreeLists(classes));
+    }
+
+    static int sizeClassFor(long size) {
+        return size <= MIN_BLOCK_SIZE ? 0 : 64 - Long.numberOfLeadingZeros(size - 1) - MIN_BLOCK_SIZE_BITS;
+    }
+
+    /**
+     * @param size requested
+     * @return the size of the block which would be allocated for this size.
+     */
+    public int blockSizeFor(long size) {
+        return sizeClasses[checkedSizeClassFor(size)].blockSize;
+    }
+
+    private int checkedSizeClassFor(long size) throws IllegalArgumentException {
+        if (size <= 0 || size > maxBlockSize)
+            throw new IllegalArgumentException("Invalid size: " + size + ", must be between 1 and " + maxBlockSize);
+        return sizeClassFor(size);
+    }
+
+    /**
+     * Allocate a block of at least <code>size</code> bytes. The contents are not initialised.
+     *
+     * @param size of the block required.
+     * @return the address of the block.
+     * @throws IllegalArgumentException if the size is not between 1 and the maxBlockSize
+     * @throws IllegalStateException    if the arena has been closed.
+     */
+    public long allocate(long size) throws IllegalArgumentException, IllegalStateException {
+        throwExceptionIfClosed();
+        int sc = checkedSizeClassFor(size);
+        LocalFreeLists local = localFreeLists.get();
+        long address = local.heads[sc];
+        if (address != 0) {
+            local.heads[sc] = memory.readLong(address);
+            local.counts[sc]--;
+            return address;
+        }
+        return sizeClasses[sc].refill(local, sc);
+    }
+
+    /**
+     * Return a block to the arena. Freeing after the arena has been closed is ignored.
+     *
+     * @param address of the block
+     * @param size    as passed to {@link #allocate(long)}
+     */
+    public void freeMemory(long address, long size) throws IllegalArgumentException {
+        if (address == 0 || isClosed())
+            return;
+        int sc = checkedSizeClassFor(size);
+        LocalFreeLists local = localFreeLists.get();
+        memory.writeLong(address, local.heads[sc]);
+        local.heads[sc] = address;
+        if (++local.counts[sc] > LOCAL_FREE_LIMIT)
+            sizeClasses[sc].spill(local, sc);
+    }
+
+    /**
+     * @return the number of bytes of native memory held by this arena.
+     */
+    public synchronized long reservedBytes() {
+        return (long) chunkCount * chunkSize;
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    public int maxBlockSize() {
+        return maxBlockSize;
+    }
+
+    synchronized long newChunk() {
+        throwExceptionIfClosed();
+        long chunk = tag == null ? memory.allocate(chunkSize) : memory.allocate(chunkSize, tag);
+        if (chunkCount == chunks.length)
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        chunks[chunkCount++] = chunk;
+        return chunk;
+    }
+
+    @Override
+    protected void performClose() {
+        synchronized (this) {
+            for (int i = 0; i < chunkCount; i++) {
+                if (tag == null)
+                    memory.freeMemory(chunks[i], chunkSize);
+                else
+                    memory.freeMemory(chunks[i], chunkSize, tag);
+            }
+            chunkCount = 0;
+        }
+        for (SizeClass sizeClass : sizeClasses)
+            sizeClass.clear();
+        localFreeLists.remove();
+    }
+
+    static final class LocalFreeLists {
+        final long[] heads;
+        final int[] counts;
+
+        LocalFreeLists(int classes) {
+            heads = new long[classes];
+            counts = new int[classes];
+        }
+    }
+
+    final class SizeClass {
+        final int blockSize;
+        private long sharedHead = 0;
+        private long chunkAddress = 0;
+        private long chunkRemaining = 0;
+
+        SizeClass(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * Take a batch of blocks from the shared list, or carve them from a chunk, returning one and
+         * leaving the rest on the local free list which must be empty.
+         */
+        synchronized long refill(LocalFreeLists local, int sc) {
+            long first = sharedHead;
+            if (first != 0) {
+                long last = first;
+                int count = 1;
+                for (long next; count < BATCH_SIZE && (next = memory.readLong(last)) != 0; count++)
+                    last = next;
+                sharedHead = memory.readLong(last);
+                memory.writeLong(last, 0L);
+                local.heads[sc] = memory.readLong(first);
+                local.counts[sc] = count - 1;
+                return first;
+            }
+
+            if (chunkRemaining < blockSize) {
+                chunkAddress = newChunk();
+                chunkRemaining = chunkSize;
+            }
+            int count = (int) Math.min(BATCH_SIZE, chunkRemaining / blockSize);
+            long address = chunkAddress;
+            chunkAddress += (long) count * blockSize;
+            chunkRemaining -= (long) count * blockSize;
+            // link the rest of the batch in address order.
+            long head = 0;
+            for (int i = count - 1; i >= 1; i--) {
+                long block = address + (long) i * blockSize;
+                memory.writeLong(block, head);
+                head = block;
+            }
+            local.heads[sc] = head;
+            local.counts[sc] = count - 1;
+            return address;
+        }
+
+        /**
+         * Give half the local free list back to the shared list.
+         */
+        void spill(LocalFreeLists local, int sc) {
+            long first = local.heads[sc];
+            long last = first;
+            for (int i = 1; i < BATCH_SIZE; i++)
+                last = memory.readLong(last);
+            local.heads[sc] = memory.readLong(last);
+            local.counts[sc] -= BATCH_SIZE;
+            synchronized (this) {
+                memory.writeLong(last, sharedHead);
+                sharedHead = first;
+            }
+        }
+
+        synchronized void clear() {
+            sharedHead = chunkAddress = chunkRemaining = 0;
+        }
+    }
+}
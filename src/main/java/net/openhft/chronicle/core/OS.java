@@ -31,9 +31,13 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -71,6 +75,18 @@ public enum OS {
     private static final boolean IS_WIN = OS.startsWith("win");
     private static final boolean IS_WIN10 = OS.equals("windows 10");
     private static final AtomicLong memoryMapped = new AtomicLong();
+    private static final AtomicLong preTouchedPages = new AtomicLong();
+    private static final AtomicLong preTouchNanos = new AtomicLong();
+    private static final AtomicLong lockedBytes = new AtomicLong();
+    // the size of each region locked by its address, so only what was locked is counted as unlocked.
+    private static final Map<Long, Long> lockedRegions = new HashMap<>();
+    private static final AtomicBoolean LOCK_WARNED = new AtomicBoolean();
+    private static final int ZEROS_SIZE = 1 << 20;
+    private static ByteBuffer ZEROS;
+    /**
+     * The size of a transparent huge page on x86_64
+     */
+    public static final long HUGE_PAGE_SIZE = 2 << 20;
     private static MethodHandle UNMAPP0_MH;
     private static MethodHandle READ0_MH;
     private static MethodHandle WRITE0_MH, WRITE0_MH2;
@@ -337,6 +353,66 @@ public enum OS {
         return map0(fileChannel, imodeFor(mode), mapAlign(start), pageAlign(size));
     }
 
+    /**
+     * Map a region of a file into memory, applying the options given.
+     *
+     * @param fileChannel to map
+     * @param mode        of access
+     * @param start       offset within a file
+     * @param size        of region to map.
+     * @param options     for the mapping
+     * @return the address of the memory mapping.
+     * @throws IOException              if the mapping fails
+     * @throws IllegalArgumentException if the arguments are not valid
+     */
+    public static long map(@NotNull FileChannel fileChannel, FileChannel.MapMode mode, long start, long size, @NotNull MapOptions options)
+            throws IOException, IllegalArgumentException {
+        long address = map(fileChannel, mode, start, size);
+        long size2 = pageAlign(size);
+        if (options.advice() != MapOptions.Advice.NORMAL)
+            madvise(address, size2, options.advice().madvise);
+        if (options.willNeed())
+            madvise(address, size2, PosixCalls.MADV_WILLNEED);
+        if (options.dontFork())
+            madvise(address, size2, PosixCalls.MADV_DONTFORK);
+        if (options.preTouch())
+            preTouch(address, size2, FileChannel.MapMode.READ_WRITE.equals(mode));
+        return address;
+    }
+
+    private static void madvise(long address, long size, int advice) {
+        int errno = PosixCalls.madvise(address, size, advice);
+        if (errno != 0 && Jvm.isDebugEnabled(OS.class))
+            Jvm.debug().on(OS.class, "madvise " + advice + " not applied, errno: " + errno);
+    }
+
+    /**
+     * Fault in every page of a region of memory by reading, or writing, one word in each page.
+     * A write is an atomic add of zero, so it doesn't change the contents even while others write to them.
+     *
+     * @param address of the start of the region, ideally page aligned
+     * @param size    of the region
+     * @param write   true to fault the pages in for writing, which must be allowed.
+     * @return the number of pages touched.
+     */
+    public static long preTouch(long address, long size, boolean write) {
+        long start = System.nanoTime();
+        Memory memory = memory();
+        int pageSize = pageSize();
+        long pages = 0;
+        for (long a = address, end = address + size; a < end; a += pageSize, pages++) {
+            if (write)
+                // an atomic add of 0 always stores, unlike a failed CAS which need not write the page on every
+                // platform, and doesn't lose a concurrent write by another thread or process.
+                memory.addInt(a, 0);
+            else
+                memory.readVolatileByte(a);
+        }
+        preTouchedPages.addAndGet(pages);
+        preTouchNanos.addAndGet(System.nanoTime() - start);
+        return pages;
+    }
+
     private static long invokeFileChannelMap0(@NotNull MethodHandle map0, @NotNull FileChannel fileChannel, int imode, long start, long size,
                                               @NotNull ThrowingFunction<OutOfMemoryError, Long, IOException> errorHandler) throws IOException {
         try {
@@ -378,6 +454,55 @@ public enum OS {
         return address;
     }
 
+    /**
+     * Allocate the disk space for a region of a file, extending the file if needed, so writes to it, or a mapping
+     * of it, don't need to allocate blocks. Existing data is not changed.
+     * <p>
+     * This uses fallocate on Linux, otherwise zeros are written in large blocks beyond the current end of the file.
+     *
+     * @param fileChannel to preallocate
+     * @param offset      of the start of the region
+     * @param length      of the region
+     * @throws IOException if the space couldn't be allocated
+     */
+    public static void preallocate(@NotNull FileChannel fileChannel, long offset, long length) throws IOException {
+        if (length <= 0)
+            return;
+        int fd = fileDescriptor(fileChannel);
+        if (fd >= 0 && PosixCalls.fallocate(fd, offset, length) == 0)
+            return;
+        writeZeros(fileChannel, offset, length);
+    }
+
+    static int fileDescriptor(@NotNull FileChannel fileChannel) {
+        try {
+            Integer fd = Jvm.getValue(fileChannel, "fd/fd");
+            return fd == null ? -1 : fd;
+        } catch (Exception | AssertionError e) {
+            // not a FileChannelImpl or not accessible
+            return -1;
+        }
+    }
+
+    static void writeZeros(@NotNull FileChannel fileChannel, long offset, long length) throws IOException {
+        long end = offset + length;
+        // only write beyond the end of the file so no data is overwritten.
+        long position = Math.max(offset, fileChannel.size());
+        ByteBuffer zeros = zeros();
+        while (position < end) {
+            zeros.clear();
+            zeros.limit((int) Math.min(ZEROS_SIZE, end - position));
+            position += fileChannel.write(zeros, position);
+        }
+    }
+
+    private static synchronized ByteBuffer zeros() {
+        if (ZEROS == null)
+            ZEROS = ByteBuffer.allocateDirect(ZEROS_SIZE);
+        // each caller has its own position and limit
+        return ZEROS.duplicate();
+    }
+
     /**
      * Unmap a region of memory.
      *
@@ -399,6 +524,118 @@ public enum OS {
         return memoryMapped.get();
     }
 
+    /**
+     * Allocate native memory aligned to {@link #HUGE_PAGE_SIZE} and advise the OS to back it with transparent
+     * huge pages. It must be freed with {@link #freeHugePageAligned(long, long)}.
+     * <p>
+     * If the advice can't be given, the memory is still aligned.
+     *
+     * @param size to allocate, rounded up to a multiple of the HUGE_PAGE_SIZE
+     * @return the aligned address
+     * @throws IllegalArgumentException if the size is not positive
+     * @throws OutOfMemoryError         if the memory couldn't be allocated
+     */
+    public static long allocateHugePageAligned(long size) throws IllegalArgumentException, OutOfMemoryError {
+        long size2 = hugePageAlign(size);
+        // the address actually allocated is stored just before the aligned address
+        long raw = memory().allocate(size2 + HUGE_PAGE_SIZE);
+        long address = (raw + HUGE_PAGE_SIZE) & -HUGE_PAGE_SIZE;
+        memory().writeLong(address - Long.BYTES, raw);
+        adviseHugePages(address, size2);
+        return address;
+    }
+
+    /**
+     * @param address as returned by {@link #allocateHugePageAligned(long)}
+     * @param size    as passed to {@link #allocateHugePageAligned(long)}
+     */
+    public static void freeHugePageAligned(long address, long size) {
+        long raw = memory().readLong(address - Long.BYTES);
+        memory().freeMemory(raw, hugePageAlign(size) + HUGE_PAGE_SIZE);
+    }
+
+    static long hugePageAlign(long size) {
+        return (size + HUGE_PAGE_SIZE - 1) & -HUGE_PAGE_SIZE;
+    }
+
+    /**
+     * Advise the OS to use transparent huge pages for a region of memory aligned to {@link #HUGE_PAGE_SIZE}
+     *
+     * @return true if the advice was accepted.
+     */
+    public static boolean adviseHugePages(long address, long size) {
+        return PosixCalls.madvise(address, size, PosixCalls.MADV_HUGEPAGE) == 0;
+    }
+
+    /**
+     * Lock a region of memory, allocated or mapped, into RAM so it can't be paged out.
+     * <p>
+     * This fails if it is not supported or would exceed the RLIMIT_MEMLOCK limit, logging a warning the first time.
+     *
+     * @param address of the region
+     * @param size    of the region
+     * @return true if locked.
+     */
+    public static boolean lock(long address, long size) {
+        int errno = PosixCalls.mlock(address, size);
+        if (errno == 0) {
+            synchronized (lockedRegions) {
+                Long previous = lockedRegions.put(address, Math.max(size, lockedRegions.getOrDefault(address, 0L)));
+                lockedBytes.addAndGet(Math.max(0, size - (previous == null ? 0 : previous)));
+            }
+            return true;
+        }
+        if (LOCK_WARNED.compareAndSet(false, true))
+            Jvm.warn().on(OS.class, errno == PosixCalls.UNAVAILABLE
+                    ? "Locking memory is not supported"
+                    : "Unable to lock memory, errno: " + errno + ", check ulimit -l");
+        return false;
+    }
+
+    /**
+     * Unlock a region of memory locked with {@link #lock(long, long)}. munlock succeeds for memory which wasn't
+     * locked, so only a region locked from the same address reduces the {@link #lockedBytes()}.
+     *
+     * @param address of the region
+     * @param size    of the region
+     * @return true if unlocked.
+     */
+    public static boolean unlock(long address, long size) {
+        if (PosixCalls.munlock(address, size) != 0)
+            return false;
+        synchronized (lockedRegions) {
+            Long locked = lockedRegions.remove(address);
+            if (locked != null) {
+                lockedBytes.addAndGet(-Math.min(size, locked));
+                // the rest of the region is still locked.
+                if (locked > size)
+                    lockedRegions.put(address + size, locked - size);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the bytes locked with {@link #lock(long, long)} and not yet unlocked, never negative.
+     */
+    public static long lockedBytes() {
+        return lockedBytes.get();
+    }
+
+    /**
+     * @return the number of pages touched by {@link #preTouch(long, long, boolean)}
+     */
+    public static long preTouchedPages() {
+        return preTouchedPages.get();
+    }
+
+    /**
+     * @return the total time spent in {@link #preTouch(long, long, boolean)} in nano-seconds
+     */
+    public static long preTouchNanos() {
+        return preTouchNanos.get();
+    }
+
     @NotNull
     private static IOException asAnIOException(Throwable e) {
         if (e instanceof InvocationTargetException)
@@ -501,7 +738,10 @@ public enum OS {
                 return;
 
             try {
-                unmap(address, size);
+                if (UnmapService.ASYNC_UNMAP)
+                    UnmapService.defaultService().unmap(address, size);
+                else
+                    unmap(address, size);
                 address = 0;
 
             } catch (@NotNull IOException e) {
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core;
+
+import com.sun.jna.Native;
+
+/**
+ * Calls to the C library via JNA, when it is available on the class path and this is 64-bit Linux.
+ * Every call fails gracefully when they are not available.
+ */
+enum PosixCalls {
+    ; // none
+
+    static final int MADV_NORMAL = 0;
+    static final int MADV_RANDOM = 1;
+    static final int MADV_SEQUENTIAL = 2;
+    static final int MADV_WILLNEED = 3;
+    static final int MADV_DONTFORK = 10;
+    static final int MADV_HUGEPAGE = 14;
+    // returned when the native call couldn't be made.
+    static final int UNAVAILABLE = -1;
+
+    static boolean isAvailable() {
+        return LibC.AVAILABLE;
+    }
+
+    /**
+     * @return 0 on success, the errno on failure or {@link #UNAVAILABLE}
+     */
+    static int madvise(long address, long length, int advice) {
+        if (!LibC.AVAILABLE)
+            return UNAVAILABLE;
+        return LibC.madvise(address, length, advice) == 0 ? 0 : Native.getLastError();
+    }
+
+    /**
+     * @return 0 on success, the errno on failure or {@link #UNAVAILABLE}
+     */
+    static int mlock(long address, long length) {
+        if (!LibC.AVAILABLE)
+            return UNAVAILABLE;
+        return LibC.mlock(address, length) == 0 ? 0 : Native.getLastError();
+    }
+
+    /**
+     * @return 0 on success, the errno on failure or {@link #UNAVAILABLE}
+     */
+    static int munlock(long address, long length) {
+        if (!LibC.AVAILABLE)
+            return UNAVAILABLE;
+        return LibC.munlock(address, length) == 0 ? 0 : Native.getLastError();
+    }
+
+    /**
+     * @return 0 on success, the errno on failure or {@link #UNAVAILABLE}
+     */
+    static int fallocate(int fd, long offset, long length) {
+        if (!LibC.AVAILABLE)
+            return UNAVAILABLE;
+        return LibC.fallocate(fd, 0, offset, length) == 0 ? 0 : Native.getLastError();
+    }
+
+    // loaded on first use so JNA is only needed if these calls are made.
+    static final class LibC {
+        static final boolean AVAILABLE;
+
+        static {
+            boolean available = false;
+            if (OS.isLinux() && OS.is64Bit()) {
+                try {
+                    Native.register(LibC.class, "c");
+                    available = true;
+                } catch (Throwable t) {
+                    Jvm.debug().on(PosixCalls.class, "Native calls to libc are not available: " + t);
+                }
+            }
+            AVAILABLE = available;
+        }
+
+        // size_t and pointers are passed as long as this is only used on 64-bit Linux
+        static native int madvise(long address, long length, int advice);
+
+        static native int mlock(long address, long length);
+
+        static native int munlock(long address, long length);
+
+        static native int fallocate(int fd, int mode, long offset, long length);
+    }
+}
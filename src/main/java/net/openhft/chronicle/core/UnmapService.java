@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core;
+
+import net.openhft.chronicle.core.cleaner.CleanerServiceLocator;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Performs unmaps and cleans direct ByteBuffers in a background thread so the thread releasing the last reference
+ * to a mapping isn't stalled by munmap.
+ * <p>
+ * The queue is bounded. When it is full the caller does the unmap itself, which slows it down to the rate at which
+ * mappings can be released.
+ */
+public class UnmapService extends AbstractCloseable {
+    /**
+     * When true, {@link OS.Unmapper} passes unmaps to the {@link #defaultService()}
+     */
+    public static final boolean ASYNC_UNMAP = Boolean.getBoolean("unmap.async");
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("unmap.queue.capacity", 1024);
+    private static final long POLL_MS = 100;
+    private static UnmapService defaultService;
+
+    @NotNull
+    private final BlockingQueue<Task> queue;
+    @NotNull
+    private final Thread thread;
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder unmapCount = new LongAdder();
+    private final LongAdder callerRunCount = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param name     of the background thread
+     * @param capacity of the queue
+     */
+    public UnmapService(@NotNull String name, int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return a shared service, started on first use, which isn't traced as a closeable. If it is closed anyway,
+     * a new one is started.
+     */
+    @NotNull
+    public static synchronized UnmapService defaultService() {
+        if (defaultService == null || defaultService.isClosed()) {
+            defaultService = new UnmapService("unmap-service", DEFAULT_CAPACITY);
+            defaultService.disableTracing();
+        }
+        return defaultService;
+    }
+
+    /**
+     * Unmap a region of memory in the background, or in this thread if the queue is full or this is closed.
+     *
+     * @param address of the start of the mapping.
+     * @param size    of the region mapped.
+     */
+    public void unmap(long address, long size) {
+        submit(new Task(address, size, null));
+    }
+
+    /**
+     * Clean a direct ByteBuffer in the background, or in this thread if the queue is full or this is closed.
+     * The buffer must not be used after this is called.
+     *
+     * @param buffer to clean
+     */
+    public void clean(@NotNull ByteBuffer buffer) {
+        if (buffer.isDirect())
+            submit(new Task(0, 0, buffer));
+    }
+
+    private void submit(@NotNull Task task) {
+        if (isClosed() || !queue.offer(task)) {
+            callerRunCount.increment();
+            perform(task);
+            return;
+        }
+        maxQueueDepth.accumulate(queue.size());
+        // if this was closed as the task was added, the queue may have been drained already.
+        if (isClosed())
+            drain();
+    }
+
+    void run() {
+        while (!isClosed() || !queue.isEmpty()) {
+            try {
+                Task task = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (task != null)
+                    perform(task);
+            } catch (InterruptedException e) {
+                // keep going until closed, otherwise the tasks would wait until then.
+            }
+        }
+    }
+
+    private void drain() {
+        for (Task task; (task = queue.poll()) != null; )
+            perform(task);
+    }
+
+    private void perform(@NotNull Task task) {
+        try {
+            if (task.buffer == null)
+                OS.unmap(task.address, task.size);
+            else
+                CleanerServiceLocator.cleanerService().clean(task.buffer);
+        } catch (IOException e) {
+            Jvm.warn().on(UnmapService.class, "Error on unmap", e);
+        }
+        long latency = System.nanoTime() - task.queuedNanos;
+        unmapCount.increment();
+        totalLatencyNanos.add(latency);
+        maxLatencyNanos.accumulate(latency);
+    }
+
+    @NotNull
+    Thread thread() {
+        return thread;
+    }
+
+    /**
+     * @return the number of unmaps and cleans waiting.
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public long maxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * @return the number of unmaps and cleans completed.
+     */
+    public long unmapCount() {
+        return unmapCount.sum();
+    }
+
+    /**
+     * @return the number of unmaps and cleans the caller had to perform as the queue was full.
+     */
+    public long callerRunCount() {
+        return callerRunCount.sum();
+    }
+
+    /**
+     * @return the total time from submitting each unmap to its completion in nano-seconds.
+     */
+    public long totalLatencyNanos() {
+        return totalLatencyNanos.sum();
+    }
+
+    public long maxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    @Override
+    protected void performClose() {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // anything submitted as this was closing is released here rather than leaked.
+        drain();
+    }
+
+    static final class Task {
+        final long address;
+        final long size;
+        @Nullable
+        final ByteBuffer buffer;
+        final long queuedNanos = System.nanoTime();
+
+        Task(long address, long size, @Nullable ByteBuffer buffer) {
+            this.address = address;
+            this.size = size;
+            this.buffer = buffer;
+        }
+    }
+}
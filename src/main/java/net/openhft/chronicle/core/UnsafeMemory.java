@@ -23,6 +23,7 @@ import org.jetbrains.annotations.NotNull;
 import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
+import java.nio.ByteOrder;
 import java.util.concurrent.atomic.AtomicLong;
 
 @SuppressWarnings("unchecked")
@@ -37,6 +38,7 @@ public class UnsafeMemory implements Memory {
     // copyMemory method. A limit is imposed to allow for safepoint polling
     // during a large copy
     static final long UNSAFE_COPY_THRESHOLD = 1024L * 1024L;
+    static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
 
     static {
         try {
@@ -134,19 +136,39 @@ public class UnsafeMemory implements Memory {
 
     @Override
     public long allocate(long capacity) throws IllegalArgumentException {
+        long address = allocate0(capacity);
+        nativeMemoryUsed.addAndGet(capacity);
+        return address;
+    }
+
+    @Override
+    public void freeMemory(long address, long size, @NotNull MemoryTag tag) {
+        if (address != 0)
+            UNSAFE.freeMemory(address);
+        tag.freed(size);
+        nativeMemoryUsed.addAndGet(-size);
+    }
+
+    @Override
+    public long allocate(long capacity, @NotNull MemoryTag tag) throws IllegalArgumentException {
+        long address = allocate0(capacity);
+        tag.allocated(capacity);
+        nativeMemoryUsed.addAndGet(capacity);
+        return address;
+    }
+
+    private long allocate0(long capacity) {
         if (capacity <= 0)
             throw new IllegalArgumentException("Invalid capacity: " + capacity);
         long address = UNSAFE.allocateMemory(capacity);
         if (address == 0)
             throw new OutOfMemoryError("Not enough free native memory, capacity attempted: " + capacity / 1024 + " KiB");
-
-        nativeMemoryUsed.addAndGet(capacity);
-
         return address;
     }
 
     @Override
     public long nativeMemoryUsed() {
+        // includes tagged memory, so this is cheap to read unlike summing the tags.
         return nativeMemoryUsed.get();
     }
 
@@ -415,6 +437,101 @@ public class UnsafeMemory implements Memory {
         }
     }
 
+    @Override
+    public boolean equals(long addressA, long addressB, long length) {
+        return mismatch0(null, addressA, null, addressB, length) < 0;
+    }
+
+    @Override
+    public boolean equals(byte[] bytes, int offset, long address, int length) {
+        return mismatch0(bytes, Unsafe.ARRAY_BYTE_BASE_OFFSET + offset, null, address, length) < 0;
+    }
+
+    @Override
+    public int compare(long addressA, long addressB, long length) {
+        return compare0(null, addressA, null, addressB, length);
+    }
+
+    @Override
+    public int compare(byte[] bytes, int offset, long address, int length) {
+        return compare0(bytes, Unsafe.ARRAY_BYTE_BASE_OFFSET + offset, null, address, length);
+    }
+
+    @Override
+    public long mismatch(long addressA, long addressB, long length) {
+        return mismatch0(null, addressA, null, addressB, length);
+    }
+
+    @Override
+    public int mismatch(byte[] bytes, int offset, long address, int length) {
+        return (int) mismatch0(bytes, Unsafe.ARRAY_BYTE_BASE_OFFSET + offset, null, address, length);
+    }
+
+    @Override
+    public long indexOf(long address, long length, byte b) {
+        return indexOf0(null, address, length, b);
+    }
+
+    @Override
+    public int indexOf(byte[] bytes, int offset, int length, byte b) {
+        return (int) indexOf0(bytes, Unsafe.ARRAY_BYTE_BASE_OFFSET + offset, length, b);
+    }
+
+    int compare0(Object a, long aOffset, Object b, long bOffset, long length) {
+        long index = mismatch0(a, aOffset, b, bOffset, length);
+        if (index < 0)
+            return 0;
+        return (UNSAFE.getByte(a, aOffset + index) & 0xFF) - (UNSAFE.getByte(b, bOffset + index) & 0xFF);
+    }
+
+    long mismatch0(Object a, long aOffset, Object b, long bOffset, long length) {
+        long pos = 0;
+        // use a loop to ensure there is a safe point every so often.
+        while (pos < length) {
+            int size = (int) Math.min(length - pos, UNSAFE_COPY_THRESHOLD);
+            long aStart = aOffset + pos, bStart = bOffset + pos;
+            int i = 0;
+            for (; i <= size - 8; i += 8) {
+                long diff = UNSAFE.getLong(a, aStart + i) ^ UNSAFE.getLong(b, bStart + i);
+                if (diff != 0)
+                    return pos + i + (LITTLE_ENDIAN
+                            ? Long.numberOfTrailingZeros(diff)
+                            : Long.numberOfLeadingZeros(diff)) / 8;
+            }
+            for (; i < size; i++)
+                if (UNSAFE.getByte(a, aStart + i) != UNSAFE.getByte(b, bStart + i))
+                    return pos + i;
+            pos += size;
+        }
+        return -1;
+    }
+
+    long indexOf0(Object o, long offset, long length, byte b) {
+        long pattern = (b & 0xFFL) * 0x0101010101010101L;
+        long pos = 0;
+        // use a loop to ensure there is a safe point every so often.
+        while (pos < length) {
+            int size = (int) Math.min(length - pos, UNSAFE_COPY_THRESHOLD);
+            long start = offset + pos;
+            int i = 0;
+            for (; i <= size - 8; i += 8) {
+                long x = UNSAFE.getLong(o, start + i) ^ pattern;
+                // has a zero byte, only the lowest flagged byte is reliable.
+                long found = (x - 0x0101010101010101L) & ~x & 0x8080808080808080L;
+                if (found != 0) {
+                    if (LITTLE_ENDIAN)
+                        return pos + i + Long.numberOfTrailingZeros(found) / 8;
+                    break;
+                }
+            }
+            for (; i < size; i++)
+                if (UNSAFE.getByte(o, start + i) == b)
+                    return pos + i;
+            pos += size;
+        }
+        return -1;
+    }
+
     @Override
     @ForceInline
     public void writeOrderedLong(long address, long i) {
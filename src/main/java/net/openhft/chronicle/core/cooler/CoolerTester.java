@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.function.Supplier;
 
 import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
 
@@ -37,6 +38,8 @@ public class CoolerTester {
     private int runTimeMS = 5_000;
     private int minCount = 20;
     private int maxCount = 20_000;
+    private long expectedIntervalNanos = 0;
+    private Supplier<Histogram> histogramSupplier = () -> new Histogram(32, 7);
 
     public CoolerTester(Callable tested, CpuCooler... disturbers) {
         Collections.addAll(this.disturbers, disturbers);
@@ -53,30 +56,30 @@ public class CoolerTester {
         Collections.addAll(this.tests, tests);
     }
 
-    static void innerloop0(Callable tested, Histogram histogram, long start, int count, int minCount, int runTimeMS, int maxCount) throws Exception {
+    static void innerloop0(Callable tested, Histogram histogram, long start, int count, int minCount, int runTimeMS, int maxCount, long expectedIntervalNanos) throws Exception {
         do {
-            innerLoop2(tested, histogram);
+            innerLoop2(tested, histogram, expectedIntervalNanos);
             count++;
         }
         while (count < minCount || (System.currentTimeMillis() - start <= runTimeMS && count < maxCount * 10));
     }
 
-    static void innerloop1(Callable tested, CpuCooler disturber, Histogram histogram, long start, int count, int minCount, int runTimeMS, int maxCount) throws Exception {
+    static void innerloop1(Callable tested, CpuCooler disturber, Histogram histogram, long start, int count, int minCount, int runTimeMS, int maxCount, long expectedIntervalNanos) throws Exception {
         do {
             disturber.disturb();
-            innerLoop2(tested, histogram);
+            innerLoop2(tested, histogram, expectedIntervalNanos);
             count++;
         }
         while (count < minCount || (System.currentTimeMillis() - start <= runTimeMS && count < maxCount));
     }
 
-    private static void innerLoop2(Callable tested, Histogram histogram) throws Exception {
+    private static void innerLoop2(Callable tested, Histogram histogram, long expectedIntervalNanos) throws Exception {
         UNSAFE.fullFence();
         long start0 = System.nanoTime();
         blackhole = tested.call();
 //            UNSAFE.fullFence();
         long time0 = System.nanoTime() - start0;
-        histogram.sample(time0);
+        histogram.sampleWithExpectedInterval(time0, expectedIntervalNanos);
     }
 
     public CoolerTester add(String name, Callable test) {
@@ -121,12 +124,40 @@ public class CoolerTester {
         return this;
     }
 
+    public long expectedIntervalNanos() {
+        return expectedIntervalNanos;
+    }
+
+    /**
+     * Correct for coordinated omission by adding the samples missed when a test takes longer than this.
+     *
+     * @param expectedIntervalNanos between tests, or 0 for no correction
+     */
+    public CoolerTester expectedIntervalNanos(long expectedIntervalNanos) {
+        this.expectedIntervalNanos = expectedIntervalNanos;
+        return this;
+    }
+
+    public Supplier<Histogram> histogramSupplier() {
+        return histogramSupplier;
+    }
+
+    /**
+     * Use e.g. <code>() -&gt; new LongHistogram(32, 7)</code> for runs long enough to overflow an int count.
+     *
+     * @param histogramSupplier to create the histogram for each test and disturber
+     */
+    public CoolerTester histogramSupplier(Supplier<Histogram> histogramSupplier) {
+        this.histogramSupplier = histogramSupplier;
+        return this;
+    }
+
     public void run() {
         try {
             System.out.println("---- Warmup ----");
             for (int j = 0; j < tests.size(); j++) {
                 for (int i = 0; i < disturbers.size(); i++) {
-                    histograms.add(new Histogram(32, 7));
+                    histograms.add(histogramSupplier.get());
                 }
             }
             for (int t = 0; t <= repeat; t++) {
@@ -143,9 +174,9 @@ public class CoolerTester {
                         long start = System.currentTimeMillis();
                         int count = 0;
                         if (t > 0)
-                            innerloop1(tested, disturber, histogram, start, count, minCount, runTimeMS, maxCount);
+                            innerloop1(tested, disturber, histogram, start, count, minCount, runTimeMS, maxCount, expectedIntervalNanos);
                         else
-                            innerloop0(tested, histogram, start, count, minCount, runTimeMS, maxCount);
+                            innerloop0(tested, histogram, start, count, minCount, runTimeMS, maxCount, expectedIntervalNanos);
                         if (tests.size() > 1)
                             System.out.print(testNames.get(j) + " ");
                         System.out.print(disturber);
@@ -72,6 +72,16 @@ public abstract class AbstractCloseable implements Closeable, ReferenceOwner {
             throw openFiles;
     }
 
+    /**
+     * Stop tracing this, so {@link #assertCloseablesClosed()} doesn't report or close it, e.g. for a shared resource
+     * which is never closed.
+     */
+    protected void disableTracing() {
+        Map<AbstractCloseable, StackTrace> map = CLOSEABLE_STACK_TRACE_MAP;
+        if (map != null)
+            map.remove(this);
+    }
+
     /**
      * Close a resource so it cannot be used again.
      */
@@ -31,10 +31,17 @@ public class ParsingCache<E> {
     @NotNull
     protected final ParsedData<E>[] interner;
     protected final int mask, shift;
+    @NotNull
+    protected final StringHash stringHash;
     private final Function<String, E> eFunction;
     protected boolean toggle = false;
 
     public ParsingCache(int capacity, Function<String, E> eFunction) throws IllegalArgumentException {
+        this(capacity, StringHash.LEGACY, eFunction);
+    }
+
+    public ParsingCache(int capacity, @NotNull StringHash stringHash, Function<String, E> eFunction) throws IllegalArgumentException {
+        this.stringHash = stringHash;
         this.eFunction = eFunction;
         int n = Maths.nextPower2(capacity, 128);
         shift = Maths.intLog2(n);
@@ -46,7 +53,7 @@ public class ParsingCache<E> {
     public E intern(@Nullable CharSequence cs) {
         if (cs == null)
             return null;
-        int hash = Maths.hash32(cs);
+        int hash = stringHash.hash32(cs);
         int h = hash & mask;
         ParsedData<E> s = interner[h];
         if (s != null && StringUtils.isEqual(s.string, cs))
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.pool;
+
+import net.openhft.chronicle.core.Maths;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The hash used by a {@link StringInterner} or {@link ParsingCache} to find the slots for a string.
+ */
+public enum StringHash {
+    /**
+     * {@link Maths#hash32(CharSequence)}, one char at a time.
+     */
+    LEGACY {
+        @Override
+        public int hash32(@NotNull CharSequence cs) {
+            return Maths.hash32(cs);
+        }
+    },
+    /**
+     * {@link Maths#fastHash32(CharSequence)}, eight Latin-1 chars at a time.
+     */
+    FAST {
+        @Override
+        public int hash32(@NotNull CharSequence cs) {
+            return Maths.fastHash32(cs);
+        }
+    };
+
+    public abstract int hash32(@NotNull CharSequence cs);
+}
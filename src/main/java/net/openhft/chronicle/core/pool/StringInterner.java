@@ -40,9 +40,16 @@ public class StringInterner {
     @NotNull
     protected final String[] interner;
     protected final int mask, shift;
+    @NotNull
+    protected final StringHash stringHash;
     protected boolean toggle = false;
 
     public StringInterner(int capacity) throws IllegalArgumentException {
+        this(capacity, StringHash.LEGACY);
+    }
+
+    public StringInterner(int capacity, @NotNull StringHash stringHash) throws IllegalArgumentException {
+        this.stringHash = stringHash;
         int n = Maths.nextPower2(capacity, 128);
         shift = Maths.intLog2(n);
         interner = new String[n];
@@ -55,7 +62,7 @@ public class StringInterner {
             return null;
         if (cs.length() > interner.length)
             return cs.toString();
-        int hash = Maths.hash32(cs);
+        int hash = stringHash.hash32(cs);
         int h = hash & mask;
         String s = interner[h];
         if (StringUtils.isEqual(cs, s))
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.time;
+
+import net.openhft.affinity.Affinity;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sun.misc.Unsafe;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
+
+/**
+ * A coarse clock for stamping events at a high rate. A ticker thread publishes the time to a padded slot every
+ * <code>resolutionNanos</code> and each read is a volatile load of that slot, rather than the calls to
+ * System.nanoTime() and System.currentTimeMillis() of the {@link SystemTimeProvider}.
+ * <p>
+ * The time returned is up to the resolution, plus any delay in scheduling the ticker, behind the
+ * SystemTimeProvider. It never goes backwards. The ticker parks between ticks, unless it is bound to a
+ * <code>cpuId</code> and the resolution is under {@value #SPIN_THRESHOLD_NS} ns, in which case it busy waits on
+ * that cpu, which should be isolated. Binding needs Java-Thread-Affinity on the class path.
+ * <p>
+ * The slot can be in a memory mapped file, so one ticker can serve every process on the host with
+ * {@link #readShared(File)}. If the process with the ticker stops, the time read from the file stops too.
+ * <p>
+ * Closing stops the ticker. A provider reading a mapped file must not be read after it is closed.
+ */
+public class CachedTimeProvider extends AbstractCloseable implements TimeProvider {
+    public static final long DEFAULT_RESOLUTION_NS = 100_000;
+    public static final long SPIN_RESOLUTION_NS = 1_000;
+    static final long SPIN_THRESHOLD_NS = 50_000;
+    // in a file, the slot has a cache line to itself after a line of padding.
+    static final int FILE_SLOT = 64;
+    static final int FILE_SIZE = 192;
+    // on heap, the slot is in the middle of 192 bytes so nothing else shares its cache line.
+    private static final int PADDED_LONGS = 24;
+    private static final int HEAP_SLOT = 12;
+
+    @Nullable
+    private final Object base;
+    private final long offset;
+    private final long resolutionNanos;
+    private final int cpuId;
+    @Nullable
+    private final File file;
+    private final long mappedAddress;
+    @Nullable
+    private final Thread ticker;
+
+    /**
+     * A provider with a ticker at the {@link #DEFAULT_RESOLUTION_NS}, not bound to a cpu, so it parks between ticks.
+     */
+    public CachedTimeProvider() {
+        this(DEFAULT_RESOLUTION_NS, -1);
+    }
+
+    /**
+     * @param resolutionNanos between updates of the time
+     * @param cpuId           to bind the ticker to, or -1 to leave it unbound and parking between ticks
+     */
+    public CachedTimeProvider(long resolutionNanos, int cpuId) {
+        this(new long[PADDED_LONGS], Unsafe.ARRAY_LONG_BASE_OFFSET + HEAP_SLOT * 8L, resolutionNanos, cpuId, null, 0, true);
+    }
+
+    private CachedTimeProvider(@Nullable Object base, long offset, long resolutionNanos, int cpuId,
+                               @Nullable File file, long mappedAddress, boolean tick) {
+        if (tick && resolutionNanos <= 0)
+            throw new IllegalArgumentException("resolutionNanos: " + resolutionNanos + " must be positive");
+        this.base = base;
+        this.offset = offset;
+        this.resolutionNanos = resolutionNanos;
+        this.cpuId = cpuId;
+        this.file = file;
+        this.mappedAddress = mappedAddress;
+        if (tick) {
+            // a file may hold a time from a previous run.
+            UNSAFE.putOrderedLong(base, offset, SystemTimeProvider.INSTANCE.currentTimeNanos());
+            ticker = new Thread(this::run, "cached-time-provider");
+            ticker.setDaemon(true);
+            ticker.start();
+        } else {
+            ticker = null;
+        }
+    }
+
+    /**
+     * Tick into a memory mapped file, creating it if needed, so other processes can read the time with
+     * {@link #readShared(File)}. Only one process should tick into a file at a time.
+     *
+     * @param file            to hold the time
+     * @param resolutionNanos between updates of the time
+     * @param cpuId           to bind the ticker to, or -1 to leave it unbound
+     * @throws IOException if the file cannot be mapped
+     */
+    @NotNull
+    public static CachedTimeProvider shared(@NotNull File file, long resolutionNanos, int cpuId) throws IOException {
+        long address = map(file);
+        return new CachedTimeProvider(null, address + FILE_SLOT, resolutionNanos, cpuId, file, address, true);
+    }
+
+    /**
+     * Read the time ticked into a file by {@link #shared(File, long, int)} in another process.
+     *
+     * @throws FileNotFoundException if the file doesn't exist
+     * @throws IOException           if the file cannot be mapped
+     */
+    @NotNull
+    public static CachedTimeProvider readShared(@NotNull File file) throws IOException {
+        if (!file.exists())
+            throw new FileNotFoundException(file.getAbsolutePath());
+        long address = map(file);
+        return new CachedTimeProvider(null, address + FILE_SLOT, 0, -1, file, address, false);
+    }
+
+    private static long map(@NotNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = OS.pageAlign(FILE_SIZE);
+            if (raf.length() < length)
+                raf.setLength(length);
+            return OS.map(raf.getChannel(), FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        }
+    }
+
+    void run() {
+        if (cpuId >= 0) {
+            try {
+                Affinity.setAffinity(cpuId);
+            } catch (NoClassDefFoundError e) {
+                Jvm.warn().on(CachedTimeProvider.class, "Unable to bind the ticker to cpu " + cpuId + ", affinity is not on the class path");
+            }
+        }
+        // only busy wait on a cpu set aside for it.
+        boolean spin = cpuId >= 0 && resolutionNanos < SPIN_THRESHOLD_NS;
+        while (!isClosed()) {
+            long next = System.nanoTime() + resolutionNanos;
+            tick();
+            if (spin) {
+                while (System.nanoTime() < next)
+                    Jvm.nanoPause();
+            } else {
+                LockSupport.parkNanos(resolutionNanos);
+            }
+        }
+    }
+
+    void tick() {
+        long now = SystemTimeProvider.INSTANCE.currentTimeNanos();
+        // only the ticker writes, so this can't race.
+        if (now > UNSAFE.getLong(base, offset))
+            UNSAFE.putOrderedLong(base, offset, now);
+    }
+
+    public long resolutionNanos() {
+        return resolutionNanos;
+    }
+
+    /**
+     * @return the cpu the ticker is bound to, or -1 if unbound
+     */
+    public int cpuId() {
+        return cpuId;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeNanos() / 1_000_000;
+    }
+
+    @Override
+    public long currentTimeMicros() {
+        return currentTimeNanos() / 1_000;
+    }
+
+    @Override
+    public long currentTimeNanos() {
+        return UNSAFE.getLongVolatile(base, offset);
+    }
+
+    @Override
+    protected void performClose() {
+        if (ticker != null) {
+            // the ticker must stop before the slot is unmapped.
+            boolean interrupted = false;
+            while (ticker.isAlive()) {
+                LockSupport.unpark(ticker);
+                try {
+                    ticker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        if (file != null) {
+            try {
+                OS.unmap(mappedAddress, FILE_SIZE);
+            } catch (IOException e) {
+                Jvm.warn().on(CachedTimeProvider.class, "Error on unmap of " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.time;
+
+import net.openhft.chronicle.core.Jvm;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Nanosecond wall clock time from System.nanoTime() plus an offset calibrated against System.currentTimeMillis().
+ * <p>
+ * The offset is estimated with a {@link RunningMinimum} of nanoTime less the wall clock, as each millisecond read is
+ * at most the actual wall clock time. Unlike the {@link SystemTimeProvider}, which resets its offset whenever it is
+ * more than a millisecond out, a change in the estimate is slewed at up to <code>slewPpm</code> so the time is smooth,
+ * and the time returned never goes backwards.
+ * <p>
+ * A change in the estimate of more than the <code>jumpThresholdNanos</code> is taken as the wall clock being stepped.
+ * A step forward is applied at once, however a step back is slewed, so the time can be ahead of the wall clock for
+ * some time afterwards. On platforms where System.currentTimeMillis() is coarser than a millisecond, the jump
+ * threshold needs to be larger than its granularity.
+ * <p>
+ * Calibration is done by whichever thread reads the time once the calibration interval has passed.
+ */
+public class CalibratedTimeProvider implements TimeProvider {
+    public static final long DEFAULT_CALIBRATION_INTERVAL_NS = 1_000_000;
+    public static final int DEFAULT_SLEW_PPM = 500;
+    public static final long DEFAULT_JUMP_THRESHOLD_NS = 2_000_000;
+    public static final CalibratedTimeProvider INSTANCE = new CalibratedTimeProvider();
+    // a sample taking longer than this was interrupted, and doesn't say much about the offset.
+    static final long MAX_SAMPLE_LATENCY_NS = 20_000;
+    static final long MAX_PRIME_NS = 50_000_000;
+    static final long DRIFT_WINDOW_NS = 10_000_000_000L;
+    // the wall clock can run this much slower than nanoTime without being seen as a jump back.
+    static final int MAX_DRIFT_PPM = 200;
+
+    @NotNull
+    private final LongSupplier nanoClock;
+    @NotNull
+    private final LongSupplier millisClock;
+    private final long calibrationIntervalNanos;
+    private final int slewPpm;
+    private final long jumpThresholdNanos;
+    private final AtomicLong lastTime = new AtomicLong();
+    @NotNull
+    private volatile Segment segment;
+    private volatile long nextCalibration;
+
+    // guarded by this
+    @NotNull
+    private RunningMinimum filter = newFilter();
+    private long calibrations = 0;
+    private long jumpsForward = 0;
+    private long jumpsBack = 0;
+    private long driftWindowStart;
+    private long driftWindowTarget;
+    private double driftPpm = 0;
+
+    public CalibratedTimeProvider() {
+        this(DEFAULT_CALIBRATION_INTERVAL_NS, DEFAULT_SLEW_PPM, DEFAULT_JUMP_THRESHOLD_NS);
+    }
+
+    /**
+     * @param calibrationIntervalNanos between comparisons with the wall clock
+     * @param slewPpm                  the fastest the offset is changed, in parts per million
+     * @param jumpThresholdNanos       a change in the estimated offset larger than this is a step in the wall clock
+     */
+    public CalibratedTimeProvider(long calibrationIntervalNanos, int slewPpm, long jumpThresholdNanos) {
+        this(System::nanoTime, System::currentTimeMillis, calibrationIntervalNanos, slewPpm, jumpThresholdNanos);
+    }
+
+    CalibratedTimeProvider(@NotNull LongSupplier nanoClock, @NotNull LongSupplier millisClock,
+                           long calibrationIntervalNanos, int slewPpm, long jumpThresholdNanos) {
+        if (slewPpm <= 0 || slewPpm >= 1_000_000)
+            throw new IllegalArgumentException("slewPpm: " + slewPpm + " must be between 1 and 999,999");
+        this.nanoClock = nanoClock;
+        this.millisClock = millisClock;
+        this.calibrationIntervalNanos = calibrationIntervalNanos;
+        this.slewPpm = slewPpm;
+        this.jumpThresholdNanos = jumpThresholdNanos;
+        long now = prime();
+        long target = -filter.minimum();
+        driftWindowStart = now;
+        driftWindowTarget = target;
+        segment = new Segment(now, target, target, slewPpm);
+        nextCalibration = now + calibrationIntervalNanos;
+    }
+
+    /**
+     * Sample until the wall clock ticks, as a sample just after a tick gives the offset most closely.
+     */
+    private long prime() {
+        long start = nanoClock.getAsLong();
+        long firstMillis = millisClock.getAsLong();
+        while (true) {
+            long n0 = nanoClock.getAsLong();
+            long millis = millisClock.getAsLong();
+            long n1 = nanoClock.getAsLong();
+            if (n1 - n0 <= MAX_SAMPLE_LATENCY_NS || filter.minimum() == Long.MAX_VALUE)
+                filter.sample(millis * 1_000_000, n1);
+            if (millis != firstMillis || n1 - start > MAX_PRIME_NS)
+                return n1;
+            Jvm.nanoPause();
+        }
+    }
+
+    @NotNull
+    private static RunningMinimum newFilter() {
+        return new RunningMinimum(0, 1_000_000 / MAX_DRIFT_PPM);
+    }
+
+    /**
+     * Compare with the wall clock now, rather than waiting for the next calibration.
+     */
+    public synchronized void calibrate() {
+        long n0 = nanoClock.getAsLong();
+        long wall = millisClock.getAsLong() * 1_000_000;
+        long n1 = nanoClock.getAsLong();
+        nextCalibration = n1 + calibrationIntervalNanos;
+        if (n1 - n0 > MAX_SAMPLE_LATENCY_NS)
+            return;
+        calibrations++;
+
+        Segment seg = segment;
+        long offset = seg.offsetAt(n1);
+        long excess = filter.sample(wall, n1);
+        long target = -filter.minimum();
+        if (excess > jumpThresholdNanos) {
+            // the wall clock has gone back, start again from this sample and slew back to it.
+            jumpsBack++;
+            filter = newFilter();
+            filter.sample(wall, n1);
+            target = -filter.minimum();
+            resetDrift(n1, target);
+
+        } else if (target - seg.target > jumpThresholdNanos) {
+            // the wall clock has gone forward, stepping forward keeps the time monotonic.
+            jumpsForward++;
+            offset = target;
+            resetDrift(n1, target);
+
+        } else if (n1 - driftWindowStart >= DRIFT_WINDOW_NS) {
+            driftPpm = (target - driftWindowTarget) * 1e6 / (n1 - driftWindowStart);
+            resetDrift(n1, target);
+        }
+        segment = new Segment(n1, offset, target, slewPpm);
+    }
+
+    private void resetDrift(long now, long target) {
+        driftWindowStart = now;
+        driftWindowTarget = target;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeNanos() / 1_000_000;
+    }
+
+    @Override
+    public long currentTimeMicros() {
+        return currentTimeNanos() / 1_000;
+    }
+
+    @Override
+    public long currentTimeNanos() {
+        long now = nanoClock.getAsLong();
+        if (now - nextCalibration >= 0) {
+            synchronized (this) {
+                // another thread could have calibrated already.
+                if (now - nextCalibration >= 0)
+                    calibrate();
+            }
+        }
+        long time = now + segment.offsetAt(now);
+        while (true) {
+            long last = lastTime.get();
+            if (time <= last)
+                return last;
+            if (lastTime.compareAndSet(last, time))
+                return time;
+        }
+    }
+
+    /**
+     * @return the offset from System.nanoTime() to the wall clock in use now.
+     */
+    public long offsetNanos() {
+        return segment.offsetAt(nanoClock.getAsLong());
+    }
+
+    /**
+     * @return the offset being slewed towards, the best estimate so far.
+     */
+    public long targetOffsetNanos() {
+        return segment.target;
+    }
+
+    /**
+     * @return how far the offset in use is from the estimate, positive if the time is behind.
+     */
+    public long slewRemainingNanos() {
+        Segment seg = segment;
+        return seg.target - seg.offsetAt(nanoClock.getAsLong());
+    }
+
+    /**
+     * @return how fast the wall clock gains on System.nanoTime() in parts per million, measured over the last ten seconds
+     * without a jump.
+     */
+    public synchronized double driftPpm() {
+        return driftPpm;
+    }
+
+    public synchronized long calibrations() {
+        return calibrations;
+    }
+
+    public synchronized long jumpsForward() {
+        return jumpsForward;
+    }
+
+    public synchronized long jumpsBack() {
+        return jumpsBack;
+    }
+
+    public long calibrationIntervalNanos() {
+        return calibrationIntervalNanos;
+    }
+
+    public int slewPpm() {
+        return slewPpm;
+    }
+
+    public long jumpThresholdNanos() {
+        return jumpThresholdNanos;
+    }
+
+    @NotNull
+    @Override
+    public synchronized String toString() {
+        return "CalibratedTimeProvider{" +
+                "offsetNanos=" + offsetNanos() +
+                ", targetOffsetNanos=" + targetOffsetNanos() +
+                ", driftPpm=" + driftPpm +
+                ", calibrations=" + calibrations +
+                ", jumpsForward=" + jumpsForward +
+                ", jumpsBack=" + jumpsBack +
+                '}';
+    }
+
+    /**
+     * The offset from a start time, moving towards the target at the slew rate. Successive segments start where the
+     * previous one had got to, so the offset is continuous.
+     */
+    static final class Segment {
+        final long start;
+        final long startOffset;
+        final long target;
+        final double slewRate;
+
+        Segment(long start, long startOffset, long target, int slewPpm) {
+            this.start = start;
+            this.startOffset = startOffset;
+            this.target = target;
+            this.slewRate = slewPpm / 1e6;
+        }
+
+        long offsetAt(long time) {
+            long elapsed = time - start;
+            if (elapsed <= 0 || startOffset == target)
+                return startOffset;
+            long slewed = (long) (elapsed * slewRate);
+            return target > startOffset
+                    ? Math.min(target, startOffset + slewed)
+                    : Math.max(target, startOffset - slewed);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.time;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.Memory;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timestamps are unique across every process on the host which maps the same file, as the last time given out
+ * is held in the file and updated with a compare and swap. There is no other communication between processes.
+ * <p>
+ * The file should be on a local file system, e.g. /dev/shm, as the compare and swap is only atomic between
+ * processes sharing the same memory.
+ * <p>
+ * Each call reserves the mapping while it uses it, so this can be closed while other threads take timestamps. The
+ * file is unmapped once the last call under way finishes, and later calls throw an IllegalStateException.
+ */
+public class MappedUniqueMicroTimeProvider extends AbstractCloseable implements TimeProvider {
+    // the last time is alone on its cache line at the start of the file.
+    private static final int LAST_TIME = 0;
+    private static final int SIZE = 64;
+    // added to the calls under way once closed, so the count is negative from then on.
+    private static final int CLOSED = Integer.MIN_VALUE;
+
+    @NotNull
+    private final File file;
+    private final long address;
+    private final Memory memory = OS.memory();
+    private final AtomicInteger callsUnderWay = new AtomicInteger();
+    private final AtomicBoolean unmapped = new AtomicBoolean();
+    private TimeProvider provider = SystemTimeProvider.INSTANCE;
+
+    private MappedUniqueMicroTimeProvider(@NotNull File file, long address) {
+        this.file = file;
+        this.address = address;
+    }
+
+    /**
+     * Map the file holding the last time, creating it if needed.
+     *
+     * @throws IOException if the file cannot be mapped
+     */
+    @NotNull
+    public static MappedUniqueMicroTimeProvider open(@NotNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = OS.pageAlign(SIZE);
+            if (raf.length() < length)
+                raf.setLength(length);
+            long address = OS.map(raf.getChannel(), FileChannel.MapMode.READ_WRITE, 0, SIZE);
+            return new MappedUniqueMicroTimeProvider(file, address);
+        }
+    }
+
+    public MappedUniqueMicroTimeProvider provider(TimeProvider provider) {
+        this.provider = provider;
+        return this;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return provider.currentTimeMillis();
+    }
+
+    @Override
+    public long currentTimeMicros() throws IllegalStateException {
+        if (callsUnderWay.incrementAndGet() < 0) {
+            finishCall();
+            throwExceptionIfClosed();
+        }
+        try {
+            long time = provider.currentTimeMicros();
+            while (true) {
+                long time0 = memory.readVolatileLong(address + LAST_TIME);
+                if (time0 >= time)
+                    time = time0 + 1;
+                if (memory.compareAndSwapLong(address + LAST_TIME, time0, time))
+                    return time;
+            }
+        } finally {
+            finishCall();
+        }
+    }
+
+    private void finishCall() {
+        // the last call to finish after closing unmaps.
+        if (callsUnderWay.decrementAndGet() == CLOSED)
+            unmap();
+    }
+
+    @Override
+    protected void performClose() {
+        if (callsUnderWay.addAndGet(CLOSED) == CLOSED)
+            unmap();
+    }
+
+    private void unmap() {
+        if (!unmapped.compareAndSet(false, true))
+            return;
+        try {
+            OS.unmap(address, SIZE);
+        } catch (IOException e) {
+            Jvm.warn().on(MappedUniqueMicroTimeProvider.class, "Error on unmap of " + file, e);
+        }
+    }
+}
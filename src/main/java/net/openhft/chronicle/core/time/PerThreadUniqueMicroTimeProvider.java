@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.time;
+
+/**
+ * Timestamps are unique across threads for a single process, without the threads contending on every call as
+ * with the {@link UniqueMicroTimeProvider}. Each thread reserves a block of microseconds at a time, so the timestamps
+ * increase for each thread. While timestamps are taken more slowly than the clock advances, they are less than
+ * <code>blockSize</code> plus the number of threads ahead of it, and out of order between threads by less than that.
+ */
+public class PerThreadUniqueMicroTimeProvider implements TimeProvider {
+    public static final int DEFAULT_BLOCK_SIZE = 16;
+    public static final PerThreadUniqueMicroTimeProvider INSTANCE = new PerThreadUniqueMicroTimeProvider();
+
+    private final int blockSize;
+    private volatile TimestampBlocks blocks;
+    private TimeProvider provider = SystemTimeProvider.INSTANCE;
+
+    /**
+     * Create new instances for testing purposes as it is stateful
+     */
+    public PerThreadUniqueMicroTimeProvider() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize the number of microseconds a thread reserves at a time
+     */
+    public PerThreadUniqueMicroTimeProvider(int blockSize) {
+        this.blockSize = blockSize;
+        blocks = new TimestampBlocks(provider.currentTimeMicros(), blockSize);
+    }
+
+    /**
+     * Start again from the provider's time, as for {@link UniqueMicroTimeProvider#provider(TimeProvider)}, discarding
+     * the blocks reserved. This should only be called while no other thread is taking timestamps, e.g. in tests.
+     */
+    public PerThreadUniqueMicroTimeProvider provider(TimeProvider provider) {
+        this.provider = provider;
+        blocks = new TimestampBlocks(provider.currentTimeMicros(), blockSize);
+        return this;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return provider.currentTimeMillis();
+    }
+
+    @Override
+    public long currentTimeMicros() {
+        return blocks.next(provider.currentTimeMicros());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.time;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.Maths;
+import net.openhft.chronicle.core.Memory;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Records every time returned by another TimeProvider into a ring in a memory mapped file, so a run can be replayed
+ * with the same timings by a {@link ReplayTimeProvider}. Each time costs an atomic increment of the count to reserve
+ * a slot, and the writes of the time and its sequence number, on top of the provider.
+ * <p>
+ * Times are recorded in nanoseconds whichever unit is asked for, and when the ring is full the oldest are
+ * overwritten, so the last <code>capacity</code> times are kept.
+ * <p>
+ * Many threads can take times from a recording. The times are kept in the order the slots were reserved, which can
+ * differ slightly from the order they were taken between threads. A slot is only read by {@link #times()} once its
+ * sequence number shows it has been written, so slots still being written are skipped.
+ */
+public class RecordingTimeProvider extends AbstractCloseable implements TimeProvider {
+    static final long MAGIC = 0x52656354696D6532L; // RecTime2
+    // header layout
+    static final int STATE = 0;
+    static final int CAPACITY = 8;
+    // the count is read by other threads, so it has its own cache line.
+    static final int COUNT = 64;
+    static final int TIMES = 128;
+    // each slot holds a time and one more than its index once written, or 0 while it is being written.
+    static final int SLOT_SIZE = 16;
+    static final int SEQUENCE = 8;
+
+    @NotNull
+    private final File file;
+    private final int capacity;
+    private final long address;
+    private final long size;
+    private final Memory memory = OS.memory();
+    private TimeProvider provider = SystemTimeProvider.INSTANCE;
+
+    private RecordingTimeProvider(@NotNull File file, int capacity, long address, long size) {
+        this.file = file;
+        this.capacity = capacity;
+        this.address = address;
+        this.size = size;
+    }
+
+    /**
+     * Start a recording, replacing any previous recording in the file.
+     *
+     * @param file     to record to
+     * @param capacity the number of times kept, a power of 2
+     * @throws IOException if the file cannot be mapped
+     */
+    @NotNull
+    public static RecordingTimeProvider open(@NotNull File file, int capacity) throws IOException {
+        if (!Maths.isPowerOf2(capacity))
+            throw new IllegalArgumentException("capacity: " + capacity + " must be a power of 2");
+        long size = TIMES + (long) SLOT_SIZE * capacity;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(OS.pageAlign(size));
+            long address = OS.map(raf.getChannel(), FileChannel.MapMode.READ_WRITE, 0, size);
+            RecordingTimeProvider recording = new RecordingTimeProvider(file, capacity, address, size);
+            recording.initHeader();
+            return recording;
+        }
+    }
+
+    private void initHeader() {
+        memory.writeLong(address + CAPACITY, capacity);
+        memory.writeLong(address + COUNT, 0L);
+        memory.writeOrderedLong(address + STATE, MAGIC);
+    }
+
+    public RecordingTimeProvider provider(TimeProvider provider) {
+        this.provider = provider;
+        return this;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        long millis = provider.currentTimeMillis();
+        record(millis * 1_000_000);
+        return millis;
+    }
+
+    @Override
+    public long currentTimeMicros() {
+        long micros = provider.currentTimeMicros();
+        record(micros * 1_000);
+        return micros;
+    }
+
+    @Override
+    public long currentTimeNanos() {
+        long nanos = provider.currentTimeNanos();
+        record(nanos);
+        return nanos;
+    }
+
+    private void record(long nanos) throws IllegalStateException {
+        throwExceptionIfClosed();
+        long index = memory.addLong(address + COUNT, 1L) - 1;
+        long slot = address + slotOffset(index, capacity);
+        // mark the slot as being written, before the time is, so a reader can't take a new time for an old one.
+        memory.writeVolatileLong(slot + SEQUENCE, 0L);
+        memory.writeLong(slot, nanos);
+        memory.writeOrderedLong(slot + SEQUENCE, index + 1);
+    }
+
+    static long slotOffset(long index, int capacity) {
+        return TIMES + (index & (capacity - 1)) * SLOT_SIZE;
+    }
+
+    /**
+     * @return the number of times recorded, including any overwritten.
+     */
+    public long count() {
+        return memory.readVolatileLong(address + COUNT);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the times kept in nanoseconds, oldest first, skipping any still being written.
+     */
+    @NotNull
+    public long[] times() throws IllegalStateException {
+        throwExceptionIfClosed();
+        long count = count();
+        long start = Math.max(0, count - capacity);
+        long[] times = new long[(int) (count - start)];
+        int n = 0;
+        for (long i = start; i < count; i++) {
+            long slot = address + slotOffset(i, capacity);
+            if (memory.readVolatileLong(slot + SEQUENCE) != i + 1)
+                continue;
+            long time = memory.readVolatileLong(slot);
+            // check the time wasn't overwritten as it was read.
+            if (memory.readVolatileLong(slot + SEQUENCE) == i + 1)
+                times[n++] = time;
+        }
+        return n == times.length ? times : Arrays.copyOf(times, n);
+    }
+
+    /**
+     * @return a ReplayTimeProvider for the times recorded so far.
+     */
+    @NotNull
+    public ReplayTimeProvider replay() {
+        return new ReplayTimeProvider(times());
+    }
+
+    @Override
+    protected void performClose() {
+        try {
+            OS.unmap(address, size);
+        } catch (IOException e) {
+            Jvm.warn().on(RecordingTimeProvider.class, "Error on unmap of " + file, e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.time;
+
+import net.openhft.chronicle.core.Maths;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static net.openhft.chronicle.core.time.RecordingTimeProvider.CAPACITY;
+import static net.openhft.chronicle.core.time.RecordingTimeProvider.COUNT;
+import static net.openhft.chronicle.core.time.RecordingTimeProvider.MAGIC;
+import static net.openhft.chronicle.core.time.RecordingTimeProvider.SEQUENCE;
+import static net.openhft.chronicle.core.time.RecordingTimeProvider.SLOT_SIZE;
+import static net.openhft.chronicle.core.time.RecordingTimeProvider.STATE;
+import static net.openhft.chronicle.core.time.RecordingTimeProvider.TIMES;
+
+/**
+ * Serves back the times recorded by a {@link RecordingTimeProvider} in the order they were recorded, one per call,
+ * so a run can be repeated with the same timings. Each time is converted to the unit asked for.
+ * <p>
+ * This is not thread safe, and once every time has been served an IllegalStateException is thrown.
+ */
+public class ReplayTimeProvider implements TimeProvider {
+    @NotNull
+    private final long[] times;
+    private int index = 0;
+
+    /**
+     * @param times in nanoseconds to serve in order
+     */
+    public ReplayTimeProvider(@NotNull long[] times) {
+        this.times = times;
+    }
+
+    /**
+     * Load the times kept in a recording.
+     *
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a recording, or its header doesn't fit the file
+     */
+    @NotNull
+    public static ReplayTimeProvider load(@NotNull File file) throws IOException, IllegalArgumentException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(TIMES).order(ByteOrder.nativeOrder());
+            channel.read(header, 0);
+            if (header.position() < TIMES || header.getLong(STATE) != MAGIC)
+                throw new IllegalArgumentException("Not a recording: " + file);
+            long capacity = header.getLong(CAPACITY);
+            if (capacity <= 0 || !Maths.isPowerOf2(capacity) || capacity > Integer.MAX_VALUE / SLOT_SIZE
+                    || TIMES + SLOT_SIZE * capacity > channel.size())
+                throw new IllegalArgumentException("Invalid capacity: " + capacity + " for a recording of "
+                        + channel.size() + " bytes: " + file);
+            long count = header.getLong(COUNT);
+            if (count < 0)
+                throw new IllegalArgumentException("Invalid count: " + count + " for a recording: " + file);
+            ByteBuffer ring = ByteBuffer.allocate(SLOT_SIZE * (int) capacity).order(ByteOrder.nativeOrder());
+            while (ring.hasRemaining())
+                if (channel.read(ring, TIMES + ring.position()) < 0)
+                    throw new IllegalArgumentException("Truncated recording: " + file);
+            long start = Math.max(0, count - capacity);
+            long[] times = new long[(int) (count - start)];
+            int n = 0;
+            for (long i = start; i < count; i++) {
+                int slot = (int) (RecordingTimeProvider.slotOffset(i, (int) capacity) - TIMES);
+                // skip a slot left unwritten, e.g. if the recording process died.
+                if (ring.getLong(slot + SEQUENCE) == i + 1)
+                    times[n++] = ring.getLong(slot);
+            }
+            if (n < times.length)
+                times = Arrays.copyOf(times, n);
+            return new ReplayTimeProvider(times);
+        }
+    }
+
+    @Override
+    public long currentTimeMillis() throws IllegalStateException {
+        return next() / 1_000_000;
+    }
+
+    @Override
+    public long currentTimeMicros() throws IllegalStateException {
+        return next() / 1_000;
+    }
+
+    @Override
+    public long currentTimeNanos() throws IllegalStateException {
+        return next();
+    }
+
+    private long next() throws IllegalStateException {
+        if (index >= times.length)
+            throw new IllegalStateException("All " + times.length + " times have been replayed");
+        return times[index++];
+    }
+
+    /**
+     * @return the number of times still to be served
+     */
+    public int remaining() {
+        return times.length - index;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Start serving the times from the first again.
+     */
+    public ReplayTimeProvider rewind() {
+        index = 0;
+        return this;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "ReplayTimeProvider{" +
+                "index=" + index +
+                ", size=" + times.length +
+                '}';
+    }
+}
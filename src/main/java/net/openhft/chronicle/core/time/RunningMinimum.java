@@ -34,7 +34,11 @@ public class RunningMinimum implements Differencer {
         this(actualMinimum, 100 * 1000);
     }
 
-    private RunningMinimum(long actualMinimum, int drift) {
+    /**
+     * @param actualMinimum to report the minimum as
+     * @param drift         the time for the minimum to rise by one, so it can follow a clock running slower
+     */
+    public RunningMinimum(long actualMinimum, int drift) {
         this.actualMinimum = actualMinimum;
         this.drift = drift;
     }
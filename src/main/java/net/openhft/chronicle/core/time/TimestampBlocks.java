@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.time;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out unique timestamps by reserving a block of them per thread at a time, so the shared counter is only
+ * updated once per block rather than on every call. Timestamps are unique across threads and increase for each
+ * thread.
+ * <p>
+ * A block never extends more than <code>blockSize</code> past the time it is reserved at. A thread whose time is
+ * already behind the last block reserved gets a block of one past it, so while the clock advances faster than
+ * timestamps are taken, each timestamp is less than <code>blockSize + threads</code> ahead of the clock, and
+ * timestamps taken by different threads are out of order by less than that. When threads take timestamps faster
+ * than the clock advances, they run ahead of it as for the {@link UniqueMicroTimeProvider}, and each thread
+ * reserves one at a time.
+ */
+final class TimestampBlocks {
+    private final AtomicLong reserved;
+    private final int blockSize;
+    // per thread, the next timestamp and the end of the block reserved.
+    private final ThreadLocal<long[]> blocks = ThreadLocal.withInitial(() -> new long[2]);
+
+    TimestampBlocks(long time, int blockSize) {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("blockSize: " + blockSize + " must be positive");
+        this.reserved = new AtomicLong(time);
+        this.blockSize = blockSize;
+    }
+
+    long next(long time) {
+        long[] block = blocks.get();
+        long next = Math.max(time, block[0]);
+        if (next >= block[1])
+            next = reserve(time, block);
+        block[0] = next + 1;
+        return next;
+    }
+
+    private long reserve(long time, long[] block) {
+        while (true) {
+            long last = reserved.get();
+            long start = Math.max(last + 1, time);
+            long end = Math.max(start + 1, time + blockSize);
+            if (reserved.compareAndSet(last, end - 1)) {
+                block[1] = end;
+                return start;
+            }
+        }
+    }
+
+    int blockSize() {
+        return blockSize;
+    }
+}
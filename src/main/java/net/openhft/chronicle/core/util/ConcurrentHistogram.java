@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.util;
+
+import net.openhft.chronicle.core.Maths;
+import org.jetbrains.annotations.NotNull;
+import sun.misc.Unsafe;
+
+import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
+
+/**
+ * A histogram with the same buckets as {@link Histogram} which many threads can sample concurrently.
+ * <p>
+ * The counts are longs striped by thread, each stripe padded so different stripes don't share a cache line.
+ * A sample is a single atomic add, with no locks, and no sample is lost even if two threads share a stripe.
+ * Each stripe holds a long per bucket, about 43 KB for the default 42 powers of 2 with 7 fraction bits, so by
+ * default there are at most {@value #DEFAULT_STRIPES} stripes. More can be given for many threads sampling at a
+ * high rate.
+ * <p>
+ * A snapshot sums the stripes into a {@link LongHistogram} for reporting. While sampling continues, the snapshot
+ * may miss samples taken during the copy, but its total count always matches its buckets.
+ */
+public class ConcurrentHistogram implements NanoSampler {
+    public static final int DEFAULT_STRIPES = 4;
+    // slots at the start of each stripe before the buckets
+    private static final int UNDER_RANGE = 0;
+    private static final int OVER_RANGE = 1;
+    private static final int HEADER = 2;
+    // 128 bytes to avoid false sharing with adjacent line prefetching.
+    private static final int PADDING = 16;
+
+    private final int powersOf2;
+    private final int fractionBits;
+    private final double minValue;
+    private final long floor;
+    private final int buckets;
+    private final int stripeMask;
+    private final int stride;
+    @NotNull
+    private final long[] counts;
+
+    public ConcurrentHistogram() {
+        this(42, 7);
+    }
+
+    public ConcurrentHistogram(int powersOf2, int fractionBits) {
+        this(powersOf2, fractionBits, 1.0);
+    }
+
+    public ConcurrentHistogram(int powersOf2, int fractionBits, double minValue) {
+        this(powersOf2, fractionBits, minValue, Math.min(DEFAULT_STRIPES, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param powersOf2    the range of values, as for {@link Histogram}
+     * @param fractionBits the precision of values, as for {@link Histogram}
+     * @param minValue     the smallest value bucketed
+     * @param stripes      the number of stripes, rounded up to a power of two.
+     */
+    public ConcurrentHistogram(int powersOf2, int fractionBits, double minValue, int stripes) {
+        this.powersOf2 = powersOf2;
+        this.fractionBits = fractionBits;
+        this.minValue = minValue;
+        floor = Histogram.floorFor(minValue, fractionBits);
+        buckets = powersOf2 << fractionBits;
+        int n = Maths.nextPower2(stripes, 1);
+        stripeMask = n - 1;
+        stride = HEADER + buckets + PADDING;
+        counts = new long[PADDING + n * stride];
+    }
+
+    public int sample(double value) {
+        int bucket = Histogram.bucketFor(value, fractionBits, floor);
+        int slot = bucket < 0 ? UNDER_RANGE
+                : bucket >= buckets ? OVER_RANGE
+                : HEADER + bucket;
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        int index = PADDING + stripe * stride + slot;
+        UNSAFE.getAndAddLong(counts, Unsafe.ARRAY_LONG_BASE_OFFSET + ((long) index << 3), 1L);
+        return bucket;
+    }
+
+    @Override
+    public void sampleNanos(long nanos) {
+        sample(nanos);
+    }
+
+    /**
+     * @return the counts so far as a LongHistogram, as a count can be more than an int
+     */
+    @NotNull
+    public LongHistogram snapshot() {
+        return snapshot(false);
+    }
+
+    /**
+     * Take the counts so far, leaving this empty. Each count is taken atomically, so a sample taken concurrently
+     * appears in either this snapshot or the next one, never both or neither.
+     *
+     * @return the counts so far as a LongHistogram, as a count can be more than an int
+     */
+    @NotNull
+    public LongHistogram snapshotAndReset() {
+        return snapshot(true);
+    }
+
+    @NotNull
+    private LongHistogram snapshot(boolean reset) {
+        long[] sums = new long[HEADER + buckets];
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            int start = PADDING + stripe * stride;
+            for (int i = 0; i < sums.length; i++) {
+                long offset = Unsafe.ARRAY_LONG_BASE_OFFSET + ((long) (start + i) << 3);
+                sums[i] += reset
+                        ? UNSAFE.getAndSetLong(counts, offset, 0L)
+                        : UNSAFE.getLongVolatile(counts, offset);
+            }
+        }
+        LongHistogram histogram = new LongHistogram(powersOf2, fractionBits, minValue);
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            long count = sums[HEADER + i];
+            total += count;
+            histogram.setCount(i, count);
+        }
+        long overRange = sums[OVER_RANGE];
+        total += overRange + sums[UNDER_RANGE];
+        histogram.init(powersOf2, fractionBits, overRange, total, floor);
+        return histogram;
+    }
+
+    /**
+     * @return the number of samples so far.
+     */
+    public long totalCount() {
+        long total = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            int start = PADDING + stripe * stride;
+            for (int i = 0; i < HEADER + buckets; i++)
+                total += UNSAFE.getLongVolatile(counts, Unsafe.ARRAY_LONG_BASE_OFFSET + ((long) (start + i) << 3));
+        }
+        return total;
+    }
+
+    public int powersOf2() {
+        return powersOf2;
+    }
+
+    public int fractionBits() {
+        return fractionBits;
+    }
+
+    public int stripes() {
+        return stripeMask + 1;
+    }
+}
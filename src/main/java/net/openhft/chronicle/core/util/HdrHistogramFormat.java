@@ -0,0 +1,471 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Converts a {@link Histogram} to and from the V2 encoding and interval log format of HdrHistogram, without
+ * depending on the HdrHistogram library, so the cheaper Histogram can be recorded and tools which read
+ * HdrHistogram logs used to analyse them.
+ * <p>
+ * HdrHistogram counts integer values in buckets of its own. On export, each bucket is counted at its middle value
+ * rounded to an integer, samples below the minimum value are counted as 0, and samples over range as the top of
+ * the range. The number of significant digits is the lowest with at least the precision of the
+ * <code>fractionBits</code>. On import, each HdrHistogram bucket is sampled at its middle value.
+ */
+public enum HdrHistogramFormat {
+    ; // none
+
+    public static final int V2_ENCODING_COOKIE = 0x1c849313;
+    public static final int V2_COMPRESSED_ENCODING_COOKIE = 0x1c849314;
+    public static final String LOG_FORMAT_VERSION = "1.3";
+    public static final String LOG_LEGEND = "\"StartTimestamp\",\"Interval_Length\",\"Interval_Max\",\"Interval_Compressed_Histogram\"";
+    // the Interval_Max is in milli-seconds for values in nano-seconds.
+    public static final double DEFAULT_MAX_VALUE_UNIT_RATIO = 1e6;
+    static final int HEADER_LENGTH = 40;
+    private static final int MAX_ZIG_ZAG_LENGTH = 9;
+    // the largest payload decoded, so a corrupt length can't allocate an unreasonable amount of memory.
+    static final int MAX_PAYLOAD_LENGTH = 16 << 20;
+
+    /**
+     * @return the most bytes {@link #encode(Histogram, ByteBuffer)} could need for this histogram.
+     */
+    public static int maxEncodedLength(@NotNull Histogram h) {
+        // each count may be preceded by a run of zeros.
+        return HEADER_LENGTH + 2 * MAX_ZIG_ZAG_LENGTH * ((h.powersOf2() << h.fractionBits()) + 2);
+    }
+
+    /**
+     * Write the uncompressed V2 encoding from the buffer's position, advancing it.
+     *
+     * @return the number of bytes written
+     */
+    public static int encode(@NotNull Histogram h, @NotNull ByteBuffer bb) {
+        Layout layout = Layout.of(h);
+        ByteOrder order = bb.order();
+        bb.order(ByteOrder.BIG_ENDIAN);
+        try {
+            int start = bb.position();
+            bb.putInt(V2_ENCODING_COOKIE)
+                    .putInt(0) // payload length
+                    .putInt(0) // normalizing index offset
+                    .putInt(layout.significantDigits)
+                    .putLong(layout.lowestDiscernibleValue)
+                    .putLong(layout.highestTrackableValue)
+                    .putDouble(1.0); // integer to double value conversion ratio
+
+            CountsWriter writer = new CountsWriter(bb);
+            int buckets = h.powersOf2() << h.fractionBits();
+            long underRange = h.totalCount() - h.overRange();
+            for (int i = 0; i < buckets; i++)
+                underRange -= h.count(i);
+            writer.add(0, underRange);
+            for (int i = 0; i < buckets; i++)
+                if (h.count(i) > 0)
+                    writer.add(layout.indexOf(Histogram.valueFor(i, h.fractionBits(), h.floor())), h.count(i));
+            writer.add(layout.indexOf(layout.highestTrackableValue), h.overRange());
+            writer.finish();
+
+            bb.putInt(start + 4, bb.position() - start - HEADER_LENGTH);
+            return bb.position() - start;
+        } finally {
+            bb.order(order);
+        }
+    }
+
+    /**
+     * @return the compressed V2 encoding, as written in interval logs.
+     */
+    @NotNull
+    public static byte[] encodeCompressed(@NotNull Histogram h) {
+        ByteBuffer uncompressed = ByteBuffer.allocate(maxEncodedLength(h));
+        int length = encode(h, uncompressed);
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(uncompressed.array(), 0, length);
+            deflater.finish();
+            byte[] bytes = new byte[8 + length + 64];
+            int end = 8;
+            while (!deflater.finished()) {
+                if (end == bytes.length)
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                end += deflater.deflate(bytes, end, bytes.length - end);
+            }
+            ByteBuffer.wrap(bytes)
+                    .putInt(V2_COMPRESSED_ENCODING_COOKIE)
+                    .putInt(end - 8);
+            return Arrays.copyOf(bytes, end);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Read a compressed or uncompressed V2 encoding from the buffer's position, advancing it, and add its samples
+     * to a histogram.
+     *
+     * @param bb   to read
+     * @param into the histogram to add the samples to
+     * @return the histogram passed
+     * @throws IllegalArgumentException if this is not a valid V2 encoding, or its payload is over {@value #MAX_PAYLOAD_LENGTH} bytes.
+     * @throws ArithmeticException      if a count is too large for a Histogram, decode into a LongHistogram.
+     */
+    @NotNull
+    public static Histogram decode(@NotNull ByteBuffer bb, @NotNull Histogram into) throws IllegalArgumentException {
+        ByteOrder order = bb.order();
+        bb.order(ByteOrder.BIG_ENDIAN);
+        try {
+            int cookie = bb.getInt(bb.position());
+            if ((cookie & ~0xF0) == (V2_COMPRESSED_ENCODING_COOKIE & ~0xF0))
+                return decodeCompressed(bb, into);
+            if ((cookie & ~0xF0) != (V2_ENCODING_COOKIE & ~0xF0))
+                throw new IllegalArgumentException("Not a V2 HdrHistogram encoding, cookie: " + Integer.toHexString(cookie));
+            bb.getInt();
+            int payloadLength = bb.getInt();
+            int normalizingIndexOffset = bb.getInt();
+            if (normalizingIndexOffset != 0)
+                throw new IllegalArgumentException("Shifted histograms are not supported, normalizingIndexOffset: " + normalizingIndexOffset);
+            int significantDigits = bb.getInt();
+            long lowestDiscernibleValue = bb.getLong();
+            long highestTrackableValue = bb.getLong();
+            double ratio = bb.getDouble();
+            if (payloadLength < 0 || payloadLength > bb.remaining())
+                throw new IllegalArgumentException("Invalid payload length: " + payloadLength + ", remaining: " + bb.remaining());
+            if (significantDigits < 0 || significantDigits > 5 || lowestDiscernibleValue < 1 || highestTrackableValue < 2 * lowestDiscernibleValue)
+                throw new IllegalArgumentException("Invalid header, significantDigits: " + significantDigits
+                        + ", lowestDiscernibleValue: " + lowestDiscernibleValue + ", highestTrackableValue: " + highestTrackableValue);
+            Layout layout = new Layout(significantDigits, lowestDiscernibleValue, highestTrackableValue);
+
+            int end = bb.position() + payloadLength;
+            int index = 0;
+            while (bb.position() < end) {
+                long count = getZigZag(bb);
+                if (count < 0) {
+                    index -= count;
+                    continue;
+                }
+                if (count > 0) {
+                    double value = ratio * (layout.lowestValueAt(index) + (layout.sizeAt(index) >> 1));
+                    into.sample(value, count, 0);
+                }
+                index++;
+            }
+            return into;
+        } finally {
+            bb.order(order);
+        }
+    }
+
+    private static Histogram decodeCompressed(ByteBuffer bb, Histogram into) {
+        bb.getInt();
+        int length = bb.getInt();
+        if (length < 0 || length > bb.remaining())
+            throw new IllegalArgumentException("Invalid compressed length: " + length + ", remaining: " + bb.remaining());
+        byte[] compressed = new byte[length];
+        bb.get(compressed);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] header = new byte[HEADER_LENGTH];
+            inflateFully(inflater, header, 0);
+            int payloadLength = ByteBuffer.wrap(header).getInt(4);
+            if (payloadLength < 0 || payloadLength > MAX_PAYLOAD_LENGTH)
+                throw new IllegalArgumentException("Invalid payload length: " + payloadLength);
+            byte[] bytes = Arrays.copyOf(header, HEADER_LENGTH + payloadLength);
+            inflateFully(inflater, bytes, HEADER_LENGTH);
+            return decode(ByteBuffer.wrap(bytes), into);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void inflateFully(Inflater inflater, byte[] bytes, int start) throws DataFormatException {
+        for (int pos = start; pos < bytes.length; ) {
+            int n = inflater.inflate(bytes, pos, bytes.length - pos);
+            if (n == 0 && (inflater.finished() || inflater.needsInput()))
+                throw new IllegalArgumentException("Compressed histogram truncated");
+            pos += n;
+        }
+    }
+
+    /**
+     * @return the compressed V2 encoding in Base64, as in an interval log.
+     */
+    @NotNull
+    public static String toBase64(@NotNull Histogram h) {
+        return Base64.getEncoder().encodeToString(encodeCompressed(h));
+    }
+
+    /**
+     * Add the samples of a Base64 compressed histogram, as in an interval log.
+     *
+     * @return the histogram passed
+     */
+    @NotNull
+    public static Histogram fromBase64(@NotNull String base64, @NotNull Histogram into) throws IllegalArgumentException {
+        return decode(ByteBuffer.wrap(Base64.getDecoder().decode(base64)), into);
+    }
+
+    /**
+     * @return the highest value HdrHistogram would report for this histogram.
+     */
+    public static long maxValue(@NotNull Histogram h) {
+        Layout layout = Layout.of(h);
+        int index = -1;
+        if (h.overRange() > 0) {
+            index = layout.indexOf(layout.highestTrackableValue);
+        } else {
+            for (int i = (h.powersOf2() << h.fractionBits()) - 1; i >= 0; i--) {
+                if (h.count(i) > 0) {
+                    index = layout.indexOf(Histogram.valueFor(i, h.fractionBits(), h.floor()));
+                    break;
+                }
+            }
+        }
+        return index < 0 ? 0 : layout.lowestValueAt(index) + layout.sizeAt(index) - 1;
+    }
+
+    /**
+     * Write the header of an interval log.
+     *
+     * @param out             to write to
+     * @param startTimeMillis the time the log started
+     */
+    public static void writeLogHeader(@NotNull Appendable out, long startTimeMillis) throws IOException {
+        out.append("#[Histogram log format version " + LOG_FORMAT_VERSION + "]\n");
+        out.append(String.format(Locale.US, "#[StartTime: %.3f (seconds since epoch), %s]\n", startTimeMillis / 1e3, new Date(startTimeMillis)));
+        out.append(LOG_LEGEND).append('\n');
+    }
+
+    /**
+     * Write one interval to a log.
+     *
+     * @param out               to write to
+     * @param tag               of the histogram, or null
+     * @param startTimeSec      the start of the interval
+     * @param endTimeSec        the end of the interval
+     * @param h                 the samples in the interval
+     * @param maxValueUnitRatio to divide the maximum value by in the log
+     */
+    public static void writeLogInterval(@NotNull Appendable out,
+                                        @Nullable String tag,
+                                        double startTimeSec,
+                                        double endTimeSec,
+                                        @NotNull Histogram h,
+                                        double maxValueUnitRatio) throws IOException {
+        if (tag != null)
+            out.append("Tag=").append(tag).append(',');
+        out.append(String.format(Locale.US, "%.3f,%.3f,%.3f,", startTimeSec, endTimeSec - startTimeSec, maxValue(h) / maxValueUnitRatio));
+        out.append(toBase64(h)).append('\n');
+    }
+
+    /**
+     * Read every interval in a log, skipping comments and the legend. The start times are as written.
+     *
+     * @param in       to read
+     * @param factory  of the histograms to add each interval to
+     * @param consumer of each interval
+     * @return the number of intervals read
+     * @throws IllegalArgumentException if a line is not valid
+     */
+    public static int readLog(@NotNull BufferedReader in,
+                              @NotNull Supplier<Histogram> factory,
+                              @NotNull IntervalConsumer consumer) throws IOException, IllegalArgumentException {
+        int count = 0;
+        for (String line; (line = in.readLine()) != null; ) {
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("\"StartTimestamp\""))
+                continue;
+            String tag = null;
+            if (line.startsWith("Tag=")) {
+                int comma = line.indexOf(',');
+                if (comma < 0)
+                    throw new IllegalArgumentException("Expected a comma after the tag in " + line);
+                tag = line.substring(4, comma);
+                line = line.substring(comma + 1);
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 4)
+                throw new IllegalArgumentException("Expected 4 fields, found " + fields.length + " in " + line);
+            double startTimeSec = Double.parseDouble(fields[0]);
+            double lengthSec = Double.parseDouble(fields[1]);
+            consumer.accept(tag, startTimeSec, lengthSec, fromBase64(fields[3], factory.get()));
+            count++;
+        }
+        return count;
+    }
+
+    static void putZigZag(ByteBuffer bb, long value) {
+        value = (value << 1) ^ (value >> 63);
+        // up to 8 bytes of 7 bits, and the last of 8 bits.
+        for (int i = 0; i < 8; i++) {
+            if ((value & ~0x7FL) == 0) {
+                bb.put((byte) value);
+                return;
+            }
+            bb.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        bb.put((byte) value);
+    }
+
+    static long getZigZag(ByteBuffer bb) {
+        long value = 0;
+        int shift = 0;
+        for (; shift < 56; shift += 7) {
+            int b = bb.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return (value >>> 1) ^ -(value & 1);
+        }
+        value |= (bb.get() & 0xFFL) << shift;
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @FunctionalInterface
+    public interface IntervalConsumer {
+        void accept(@Nullable String tag, double startTimeSec, double lengthSec, @NotNull Histogram histogram);
+    }
+
+    /**
+     * Writes counts in increasing index order, merging counts with the same index, and runs of empty indexes.
+     */
+    static final class CountsWriter {
+        private final ByteBuffer bb;
+        private int nextIndex = 0;
+        private int index = -1;
+        private long count = 0;
+
+        CountsWriter(ByteBuffer bb) {
+            this.bb = bb;
+        }
+
+        void add(int index, long count) {
+            if (count <= 0)
+                return;
+            if (index != this.index) {
+                flush();
+                this.index = index;
+            }
+            this.count += count;
+        }
+
+        private void flush() {
+            if (count <= 0)
+                return;
+            int zeros = index - nextIndex;
+            if (zeros > 1)
+                putZigZag(bb, -zeros);
+            else if (zeros == 1)
+                putZigZag(bb, 0);
+            putZigZag(bb, count);
+            nextIndex = index + 1;
+            count = 0;
+        }
+
+        void finish() {
+            flush();
+            // an empty histogram has one empty count.
+            if (nextIndex == 0)
+                putZigZag(bb, 0);
+        }
+    }
+
+    /**
+     * The bucket layout of an HdrHistogram.
+     */
+    static final class Layout {
+        final int significantDigits;
+        final long lowestDiscernibleValue;
+        final long highestTrackableValue;
+        private final int unitMagnitude;
+        private final int subBucketHalfCountMagnitude;
+        private final int subBucketHalfCount;
+        private final long subBucketMask;
+        private final int leadingZeroCountBase;
+
+        Layout(int significantDigits, long lowestDiscernibleValue, long highestTrackableValue) {
+            this.significantDigits = significantDigits;
+            this.lowestDiscernibleValue = lowestDiscernibleValue;
+            this.highestTrackableValue = highestTrackableValue;
+            unitMagnitude = 63 - Long.numberOfLeadingZeros(lowestDiscernibleValue);
+            int subBucketCountMagnitude = subBucketCountMagnitude(significantDigits);
+            subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+            subBucketHalfCount = 1 << subBucketHalfCountMagnitude;
+            subBucketMask = ((1L << subBucketCountMagnitude) - 1) << unitMagnitude;
+            leadingZeroCountBase = 64 - unitMagnitude - subBucketCountMagnitude;
+        }
+
+        static int subBucketCountMagnitude(int significantDigits) {
+            long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+            // rounded up
+            return 64 - Long.numberOfLeadingZeros(largestValueWithSingleUnitResolution - 1);
+        }
+
+        static Layout of(Histogram h) {
+            int significantDigits = 0;
+            while (significantDigits < 5 && subBucketCountMagnitude(significantDigits) - 1 < h.fractionBits())
+                significantDigits++;
+            double top = Double.longBitsToDouble((h.floor() + ((long) h.powersOf2() << h.fractionBits())) << (52 - h.fractionBits()));
+            long highest = (long) Math.min(Long.MAX_VALUE / 2, Math.ceil(top));
+            return new Layout(significantDigits, 1, Math.max(2, highest));
+        }
+
+        int indexOf(double value) {
+            long v = Math.min(highestTrackableValue, Math.round(value));
+            int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(v | subBucketMask);
+            int subBucketIndex = (int) (v >>> (bucketIndex + unitMagnitude));
+            return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + subBucketIndex - subBucketHalfCount;
+        }
+
+        private int bucketIndexAt(int index) {
+            return Math.max(0, (index >> subBucketHalfCountMagnitude) - 1);
+        }
+
+        long lowestValueAt(int index) {
+            int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+            int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+            if (bucketIndex < 0) {
+                subBucketIndex -= subBucketHalfCount;
+                bucketIndex = 0;
+            }
+            return (long) subBucketIndex << (bucketIndex + unitMagnitude);
+        }
+
+        long sizeAt(int index) {
+            return 1L << (unitMagnitude + bucketIndexAt(index));
+        }
+    }
+}
@@ -18,26 +18,52 @@
 
 package net.openhft.chronicle.core.util;
 
+import net.openhft.chronicle.core.Maths;
+import net.openhft.chronicle.core.io.UnsafeText;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.DoubleFunction;
-import java.util.stream.DoubleStream;
+import java.util.function.DoubleUnaryOperator;
+
+import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
 
 // TODO add a dummy histogram.
 public class Histogram implements NanoSampler {
-    static final DecimalFormat F3 = new DecimalFormat("0.000");
-    static final DecimalFormat F2 = new DecimalFormat("0.00");
-    static final DecimalFormat F1 = new DecimalFormat("0.0");
+    static final DoubleUnaryOperator NANOS_TO_MICROS = t -> t / 1e3;
+    private static final Format[] MICROS_FORMATS = {
+            new Format("50/90 99/99.9 99.99 - worst was ", true,
+                    0.5, 0.9, 0.99, 0.999, 0.9999, 1),
+            new Format("50/90 99/99.9 99.99/99.999 - worst was ", true,
+                    0.5, 0.9, 0.99, 0.999, 0.9999, 0.99999, 1),
+            new Format("50/90 99/99.9 99.99/99.999 99.9999/worst was ", false,
+                    0.5, 0.9, 0.99, 0.999, 0.9999, 0.99999, 0.999999, 1)};
+    private static final Format[] LONG_MICROS_FORMATS = {
+            new Format("50/90 97/99 99.7/99.9 99.97/99.99 - worst was ", true,
+                    0.5, 0.9, 0.97, 0.99, 0.997, 0.999, 0.9997, 0.9999, 1),
+            new Format("50/90 97/99 99.7/99.9 99.97/99.99 99.997/99.999 - worst was ", true,
+                    0.5, 0.9, 0.97, 0.99, 0.997, 0.999, 0.9997, 0.9999, 0.99997, 0.99999, 1),
+            new Format("50/90 97/99 99.7/99.9 99.97/99.99 99.997/99.999 99.9997/99.9999 - worst was ", true,
+                    0.5, 0.9, 0.97, 0.99, 0.997, 0.999, 0.9997, 0.9999, 0.99997, 0.99999, 0.999997, 0.999999, 1)};
     private int fractionBits;
     private int powersOf2;
-    private long overRange;
-    private long totalCount;
+    // accessed by LongHistogram
+    long overRange;
+    long totalCount;
     private long floor;
     private int[] sampleCount;
+    // reused by the reports so they don't allocate
+    private double[] reportPercentiles;
+    // if cachePercentiles, countAbove[i] is the number of samples in bucket i and above, including over range,
+    // built when needed.
+    private boolean cachePercentiles = false;
+    private long[] countAbove;
+    private int minBucket;
+    // the totalCount countAbove was built for, or -1 if the counts have changed in another way since.
+    private long countAboveTotal = -1;
 
     public Histogram() {
         this(42, 7);
@@ -48,10 +74,32 @@ public class Histogram implements NanoSampler {
     }
 
     public Histogram(int powersOf2, int fractionBits, double minValue) {
+        this(powersOf2, fractionBits, minValue, new int[powersOf2 << fractionBits]);
+    }
+
+    Histogram(int powersOf2, int fractionBits, double minValue, int[] sampleCount) {
         this.powersOf2 = powersOf2;
         this.fractionBits = fractionBits;
-        sampleCount = new int[powersOf2 << fractionBits];
-        floor = Double.doubleToRawLongBits(minValue) >> (52 - fractionBits);
+        this.sampleCount = sampleCount;
+        floor = floorFor(minValue, fractionBits);
+    }
+
+    static long floorFor(double minValue, int fractionBits) {
+        return Double.doubleToRawLongBits(minValue) >> (52 - fractionBits);
+    }
+
+    /**
+     * @return the bucket for a value, negative if below the floor.
+     */
+    static int bucketFor(double value, int fractionBits, long floor) {
+        return (int) ((Double.doubleToRawLongBits(value) >> (52 - fractionBits)) - floor);
+    }
+
+    /**
+     * @return the value in the middle of a bucket.
+     */
+    static double valueFor(int bucket, int fractionBits, long floor) {
+        return Double.longBitsToDouble((((bucket + floor) << 1) + 1) << (51 - fractionBits));
     }
 
     /**
@@ -94,7 +142,7 @@ public class Histogram implements NanoSampler {
             return false;
         int size = powersOf2 << fractionBits;
         for (int i = 0; i < size; i++) {
-            if (sampleCount[i] != h.sampleCount[i])
+            if (count(i) != h.count(i))
                 return false;
         }
         return true;
@@ -122,10 +170,14 @@ public class Histogram implements NanoSampler {
         this.overRange = overRange;
         this.totalCount = totalCount;
         this.floor = floor;
+        countsChanged();
+
+        ensureBuckets(powersOf2 << fractionBits);
+    }
 
-        int minSampleCountLength = powersOf2 << fractionBits;
-        if (sampleCount.length < minSampleCountLength)
-            sampleCount = new int[minSampleCountLength];
+    void ensureBuckets(int buckets) {
+        if (sampleCount.length < buckets)
+            sampleCount = new int[buckets];
     }
 
     public int fractionBits() {
@@ -140,21 +192,74 @@ public class Histogram implements NanoSampler {
         return overRange;
     }
 
+    /**
+     * The counts of each bucket, which the caller may modify. As the percentiles may be cached, calling this
+     * marks the counts as changed, so to modify them again after a percentile has been queried, call this again
+     * rather than keeping the array.
+     *
+     * @return the counts of each bucket
+     * @see #cachePercentiles(boolean)
+     */
     public int[] sampleCount() {
+        countsChanged();
         return sampleCount;
     }
 
-    public void add(@NotNull Histogram h) {
+    /**
+     * @return the count of a bucket
+     */
+    public long count(int bucket) {
+        return sampleCount[bucket];
+    }
+
+    void setCount(int bucket, long count) throws ArithmeticException {
+        sampleCount[bucket] = toIntCount(count);
+        countsChanged();
+    }
+
+    /**
+     * Called when the counts change other than by sampling, which is detected by the change in totalCount.
+     */
+    void countsChanged() {
+        countAboveTotal = -1;
+    }
+
+    private static int toIntCount(long count) throws ArithmeticException {
+        if (count > Integer.MAX_VALUE)
+            throw new ArithmeticException("A count of " + count + " is too large for a Histogram, use a LongHistogram");
+        return (int) count;
+    }
+
+    int bucketCount() {
+        return sampleCount.length;
+    }
+
+    /**
+     * @return an empty histogram of the same type and size, which {@link #init} can set up like this one.
+     */
+    @NotNull
+    Histogram newInstance() {
+        return new Histogram(powersOf2, fractionBits);
+    }
+
+    /**
+     * @throws ArithmeticException if a count would be more than an int, in which case use a LongHistogram,
+     *                             leaving this unchanged.
+     */
+    public void add(@NotNull Histogram h) throws ArithmeticException {
         assert powersOf2 == h.powersOf2;
         assert fractionBits == h.fractionBits;
+        for (int i = 0; i < sampleCount.length; i++)
+            toIntCount(sampleCount[i] + h.count(i));
         totalCount += h.totalCount;
         overRange += h.overRange;
+        countsChanged();
         for (int i = 0; i < sampleCount.length; i++)
-            sampleCount[i] += h.sampleCount[i];
+            sampleCount[i] += (int) h.count(i);
     }
 
     public int sample(double time) {
-        int bucket = (int) ((Double.doubleToRawLongBits(time) >> (52 - fractionBits)) - floor);
+        int bucket = bucketFor(time, fractionBits, floor);
         if (bucket >= sampleCount.length)
             overRange++;
         else if (bucket >= 0)
@@ -163,6 +268,67 @@ public class Histogram implements NanoSampler {
         return bucket;
     }
 
+    /**
+     * Sample a value from a test which should take a sample every <code>expectedInterval</code>. When a sample takes
+     * longer than that, the samples which would have been taken while it was stalled are added too, each one
+     * <code>expectedInterval</code> less than the previous, so the percentiles are not skewed by coordinated omission.
+     *
+     * @param value            to sample
+     * @param expectedInterval between samples, or 0 for no correction
+     * @return the bucket of the value
+     */
+    public int sampleWithExpectedInterval(double value, double expectedInterval) {
+        int bucket = sample(value);
+        if (expectedInterval > 0)
+            for (double missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval)
+                sample(missing);
+        return bucket;
+    }
+
+    void sample(double value, long count, double expectedInterval) throws ArithmeticException {
+        int bucket = bucketFor(value, fractionBits, floor);
+        if (bucket >= sampleCount.length)
+            overRange += count;
+        else if (bucket >= 0)
+            sampleCount[bucket] = toIntCount(sampleCount[bucket] + count);
+        totalCount += count;
+        if (expectedInterval > 0)
+            for (double missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval)
+                sample(missing, count, 0);
+    }
+
+    /**
+     * @return an independent copy of this histogram.
+     */
+    @NotNull
+    public Histogram copy() {
+        return copyCorrectedForCoordinatedOmission(0);
+    }
+
+    /**
+     * Copy this histogram, adding the samples a test at a fixed rate would have missed, as for
+     * {@link #sampleWithExpectedInterval(double, double)}, for histograms sampled without correction.
+     * Each value is taken as the middle of its bucket, and samples over range are copied as they are.
+     *
+     * @param expectedInterval between samples, or 0 for no correction
+     * @return the corrected copy.
+     */
+    @NotNull
+    public Histogram copyCorrectedForCoordinatedOmission(double expectedInterval) {
+        Histogram h = newInstance();
+        int buckets = bucketCount();
+        long underRange = totalCount - overRange;
+        for (int i = 0; i < buckets; i++)
+            underRange -= count(i);
+        h.init(powersOf2, fractionBits, overRange, overRange + underRange, floor);
+        for (int i = 0; i < buckets; i++) {
+            long count = count(i);
+            if (count > 0)
+                h.sample(valueFor(i, fractionBits, floor), count, expectedInterval);
+        }
+        return h;
+    }
+
     public double min() {
         return percentile(0.0);
     }
@@ -176,12 +342,14 @@ public class Histogram implements NanoSampler {
     }
 
     public double percentile(double fraction) {
+        if (cachePercentiles)
+            return cachedPercentile(fraction);
+        int buckets = bucketCount();
         if (fraction <= 0) {
-            for (int i = 0; i < sampleCount.length; i++) {
-                if (sampleCount[i] <= 0)
+            for (int i = 0; i < buckets; i++) {
+                if (count(i) <= 0)
                     continue;
-                long bits = ((((i + floor) << 1) + 1) << (51 - fractionBits));
-                return Double.longBitsToDouble(bits);
+                return valueFor(i, fractionBits, floor);
             }
             return 1;
         }
@@ -189,16 +357,76 @@ public class Histogram implements NanoSampler {
         value -= overRange;
         if (value < 0)
             return Double.POSITIVE_INFINITY;
-        for (int i = sampleCount.length - 1; i >= 0; i--) {
-            value -= sampleCount[i];
-            if (value < 0) {
-                long bits = ((((i + floor) << 1) + 1) << (51 - fractionBits));
-                return Double.longBitsToDouble(bits);
-            }
+        for (int i = buckets - 1; i >= 0; i--) {
+            value -= count(i);
+            if (value < 0)
+                return valueFor(i, fractionBits, floor);
         }
         return 1;
     }
 
+    public boolean cachePercentiles() {
+        return cachePercentiles;
+    }
+
+    /**
+     * Keep the cumulative counts between percentile queries, so each percentile is a binary search rather than a
+     * scan of the buckets until the next sample. This takes a long for every bucket, twice the memory of the counts,
+     * so is worth it only when percentiles are asked for many times between samples.
+     *
+     * @param cachePercentiles true to keep the cumulative counts, false to release them
+     */
+    public Histogram cachePercentiles(boolean cachePercentiles) {
+        this.cachePercentiles = cachePercentiles;
+        if (!cachePercentiles) {
+            countAbove = null;
+            countsChanged();
+        }
+        return this;
+    }
+
+    private double cachedPercentile(double fraction) {
+        long[] countAbove = countAbove();
+        if (fraction <= 0)
+            return minBucket < 0 ? 1 : valueFor(minBucket, fractionBits, floor);
+        long value = (long) (totalCount * (1 - fraction));
+        if (value < overRange)
+            return Double.POSITIVE_INFINITY;
+        if (countAbove.length == 0 || countAbove[0] <= value)
+            return 1;
+        // find the highest bucket with more than value samples at or above it.
+        int lo = 0, hi = countAbove.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (countAbove[mid] > value)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return valueFor(lo, fractionBits, floor);
+    }
+
+    /**
+     * Build the cumulative counts in one pass over the buckets, if there has been a sample since they were last built.
+     */
+    private long[] countAbove() {
+        if (countAboveTotal != totalCount) {
+            int buckets = bucketCount();
+            if (countAbove == null || countAbove.length != buckets)
+                countAbove = new long[buckets];
+            long sum = overRange;
+            minBucket = -1;
+            for (int i = buckets - 1; i >= 0; i--) {
+                long count = count(i);
+                if (count > 0)
+                    minBucket = i;
+                countAbove[i] = sum += count;
+            }
+            countAboveTotal = totalCount;
+        }
+        return countAbove;
+    }
+
     @NotNull
     public double[] getPercentiles() {
         return getPercentiles(percentilesFor(totalCount));
@@ -206,102 +434,227 @@ public class Histogram implements NanoSampler {
 
     @NotNull
     public double[] getPercentiles(double[] percentileFor) {
-        return DoubleStream.of(percentileFor).map(this::percentile).toArray();
+        double[] values = new double[percentileFor.length];
+        percentiles(percentileFor, values);
+        return values;
+    }
+
+    /**
+     * Compute the percentiles for many fractions without allocating. If the fractions are in ascending order, as
+     * for the reports, this is one pass over the buckets.
+     * The values are the same as calling {@link #percentile(double)} for each fraction.
+     *
+     * @param fractions in any order
+     * @param values    to hold the percentile of each fraction, at least as long as the fractions.
+     */
+    public void percentiles(double[] fractions, double[] values) {
+        if (cachePercentiles || !isAscending(fractions)) {
+            for (int i = 0; i < fractions.length; i++)
+                values[i] = percentile(fractions[i]);
+            return;
+        }
+        int j = fractions.length - 1;
+        long countAbove = overRange;
+        for (; j >= 0 && fractions[j] > 0; j--) {
+            if ((long) (totalCount * (1 - fractions[j])) - countAbove >= 0)
+                break;
+            values[j] = Double.POSITIVE_INFINITY;
+        }
+        for (int i = bucketCount() - 1; i >= 0 && j >= 0 && fractions[j] > 0; i--) {
+            countAbove += count(i);
+            while (j >= 0 && fractions[j] > 0 && (long) (totalCount * (1 - fractions[j])) - countAbove < 0)
+                values[j--] = valueFor(i, fractionBits, floor);
+        }
+        for (; j >= 0; j--)
+            values[j] = fractions[j] <= 0 ? min() : 1;
+    }
+
+    private static boolean isAscending(double[] fractions) {
+        for (int i = 1; i < fractions.length; i++)
+            if (fractions[i] < fractions[i - 1])
+                return false;
+        return true;
     }
 
     @NotNull
     public String toMicrosFormat() {
-        return toMicrosFormat(t -> t / 1e3);
+        return appendMicrosFormat(new StringBuilder(), NANOS_TO_MICROS).toString();
     }
 
     @NotNull
     public String toMicrosFormat(@NotNull DoubleFunction<Double> toMicros) {
-        if (totalCount < 1_000_000)
-            return "50/90 99/99.9 99.99 - worst was " +
-                    p(toMicros.apply(percentile(0.5))) + " / " +
-                    p(toMicros.apply(percentile(0.9))) + "  " +
-                    p(toMicros.apply(percentile(0.99))) + " / " +
-                    p(toMicros.apply(percentile(0.999))) + "  " +
-                    p(toMicros.apply(percentile(0.9999))) + " - " +
-                    p(toMicros.apply(percentile(1)));
-
-        if (totalCount < 10_000_000)
-            return "50/90 99/99.9 99.99/99.999 - worst was " +
-                    p(toMicros.apply(percentile(0.5))) + " / " +
-                    p(toMicros.apply(percentile(0.9))) + "  " +
-                    p(toMicros.apply(percentile(0.99))) + " / " +
-                    p(toMicros.apply(percentile(0.999))) + "  " +
-                    p(toMicros.apply(percentile(0.9999))) + " / " +
-                    p(toMicros.apply(percentile(0.99999))) + " - " +
-                    p(toMicros.apply(percentile(1)));
-
-        return "50/90 99/99.9 99.99/99.999 99.9999/worst was " +
-                p(toMicros.apply(percentile(0.5))) + " / " +
-                p(toMicros.apply(percentile(0.9))) + "  " +
-                p(toMicros.apply(percentile(0.99))) + " / " +
-                p(toMicros.apply(percentile(0.999))) + "  " +
-                p(toMicros.apply(percentile(0.9999))) + " / " +
-                p(toMicros.apply(percentile(0.99999))) + "  " +
-                p(toMicros.apply(percentile(0.999999))) + " / " +
-                p(toMicros.apply(percentile(1)));
+        return appendMicrosFormat(new StringBuilder(), toMicros::apply).toString();
     }
 
     @NotNull
     public String toLongMicrosFormat() {
-        return toLongMicrosFormat(t -> t / 1e3);
+        return appendLongMicrosFormat(new StringBuilder(), NANOS_TO_MICROS).toString();
     }
 
     @NotNull
     public String toLongMicrosFormat(@NotNull DoubleFunction<Double> toMicros) {
-        if (totalCount < 1_000_000)
-            return "50/90 97/99 99.7/99.9 99.97/99.99 - worst was " +
-                    p(toMicros.apply(percentile(0.5))) + " / " +
-                    p(toMicros.apply(percentile(0.9))) + "  " +
-                    p(toMicros.apply(percentile(0.97))) + " / " +
-                    p(toMicros.apply(percentile(0.99))) + "  " +
-                    p(toMicros.apply(percentile(0.997))) + " / " +
-                    p(toMicros.apply(percentile(0.999))) + "  " +
-                    p(toMicros.apply(percentile(0.9997))) + " / " +
-                    p(toMicros.apply(percentile(0.9999))) + " - " +
-                    p(toMicros.apply(percentile(1)));
-
-        if (totalCount < 10_000_000)
-            return "50/90 97/99 99.7/99.9 99.97/99.99 99.997/99.999 - worst was " +
-                    p(toMicros.apply(percentile(0.5))) + " / " +
-                    p(toMicros.apply(percentile(0.9))) + "  " +
-                    p(toMicros.apply(percentile(0.97))) + " / " +
-                    p(toMicros.apply(percentile(0.99))) + "  " +
-                    p(toMicros.apply(percentile(0.997))) + " / " +
-                    p(toMicros.apply(percentile(0.999))) + "  " +
-                    p(toMicros.apply(percentile(0.9997))) + " / " +
-                    p(toMicros.apply(percentile(0.9999))) + "  " +
-                    p(toMicros.apply(percentile(0.99997))) + " / " +
-                    p(toMicros.apply(percentile(0.99999))) + " - " +
-                    p(toMicros.apply(percentile(1)));
-
-        return "50/90 97/99 99.7/99.9 99.97/99.99 99.997/99.999 99.9997/99.9999 - worst was " +
-                p(toMicros.apply(percentile(0.5))) + " / " +
-                p(toMicros.apply(percentile(0.9))) + "  " +
-                p(toMicros.apply(percentile(0.97))) + " / " +
-                p(toMicros.apply(percentile(0.99))) + "  " +
-                p(toMicros.apply(percentile(0.997))) + " / " +
-                p(toMicros.apply(percentile(0.999))) + "  " +
-                p(toMicros.apply(percentile(0.9997))) + " / " +
-                p(toMicros.apply(percentile(0.9999))) + "  " +
-                p(toMicros.apply(percentile(0.99997))) + " / " +
-                p(toMicros.apply(percentile(0.99999))) + "  " +
-                p(toMicros.apply(percentile(0.999997))) + " / " +
-                p(toMicros.apply(percentile(0.999999))) + " - " +
-                p(toMicros.apply(percentile(1)));
+        return appendLongMicrosFormat(new StringBuilder(), toMicros::apply).toString();
+    }
+
+    /**
+     * Append the same text as {@link #toMicrosFormat()} without allocating.
+     */
+    @NotNull
+    public StringBuilder appendMicrosFormat(@NotNull StringBuilder sb) {
+        return appendMicrosFormat(sb, NANOS_TO_MICROS);
+    }
+
+    @NotNull
+    public StringBuilder appendMicrosFormat(@NotNull StringBuilder sb, @NotNull DoubleUnaryOperator toMicros) {
+        appendFormat(sb, 0, MICROS_FORMATS, toMicros);
+        return sb;
+    }
+
+    @NotNull
+    public StringBuilder appendLongMicrosFormat(@NotNull StringBuilder sb) {
+        return appendLongMicrosFormat(sb, NANOS_TO_MICROS);
     }
 
     @NotNull
-    private String p(double v) {
-        return v < 0.1 ? F3.format(v) :
-                v < 1 ? F2.format(v) :
-                        v < 10 ? F1.format(v) :
-                                v < 1000 ? Long.toString(Math.round(v)) :
-                                        String.format("%,d", Math.round(v / 10) * 10);
+    public StringBuilder appendLongMicrosFormat(@NotNull StringBuilder sb, @NotNull DoubleUnaryOperator toMicros) {
+        appendFormat(sb, 0, LONG_MICROS_FORMATS, toMicros);
+        return sb;
+    }
+
+    /**
+     * Write the same text as {@link #toMicrosFormat()} as ISO-8859-1 to native memory.
+     * NOTE: The caller has to ensure there is enough memory, 256 bytes is always enough.
+     *
+     * @return the address after the text.
+     */
+    public long appendMicrosFormat(long address, @NotNull DoubleUnaryOperator toMicros) {
+        return appendFormat(null, address, MICROS_FORMATS, toMicros);
+    }
+
+    /**
+     * Write the same text as {@link #toLongMicrosFormat()} as ISO-8859-1 to native memory.
+     * NOTE: The caller has to ensure there is enough memory, 256 bytes is always enough.
+     *
+     * @return the address after the text.
+     */
+    public long appendLongMicrosFormat(long address, @NotNull DoubleUnaryOperator toMicros) {
+        return appendFormat(null, address, LONG_MICROS_FORMATS, toMicros);
+    }
+
+    /**
+     * Append to the StringBuilder, or write to the address if it is null.
+     */
+    private long appendFormat(@Nullable StringBuilder sb, long address, Format[] formats, DoubleUnaryOperator toMicros) {
+        Format format = formats[totalCount < 1_000_000 ? 0 : totalCount < 10_000_000 ? 1 : 2];
+        double[] fractions = format.fractions;
+        if (reportPercentiles == null)
+            reportPercentiles = new double[LONG_MICROS_FORMATS[2].fractions.length];
+        double[] values = reportPercentiles;
+        percentiles(fractions, values);
+
+        address = appendText(sb, address, format.header);
+        for (int i = 0; i < fractions.length; i++) {
+            if (i == fractions.length - 1 && format.worstDash)
+                address = appendText(sb, address, " - ");
+            else if (i > 0)
+                address = appendText(sb, address, (i & 1) != 0 ? " / " : "  ");
+            address = appendValue(sb, address, toMicros.applyAsDouble(values[i]));
+        }
+        return address;
+    }
+
+    private static long appendValue(@Nullable StringBuilder sb, long address, double v) {
+        if (Double.isNaN(v))
+            return appendText(sb, address, "NaN");
+        if (Double.isInfinite(v))
+            return appendText(sb, address, v > 0 ? "Infinity" : "-Infinity");
+        return v < 0.1 ? appendDecimal(sb, address, roundScaled(v, 1000), 3) :
+                v < 1 ? appendDecimal(sb, address, roundScaled(v, 100), 2) :
+                        v < 10 ? appendDecimal(sb, address, roundScaled(v, 10), 1) :
+                                v < 1000 ? appendLong(sb, address, Math.round(v)) :
+                                        appendGrouped(sb, address, Math.round(v / 10) * 10);
+    }
+
+    /**
+     * @return v * tens rounded half even based on the exact product, as DecimalFormat does.
+     */
+    static long roundScaled(double v, long tens) {
+        double scaled = v * tens;
+        double floor = Math.floor(scaled);
+        if (scaled - floor != 0.5)
+            return Math.round(scaled);
+        // the product was rounded to a tie, so use the rounding error to break it.
+        double error = productError(v, tens, scaled);
+        if (error != 0)
+            return (long) (error > 0 ? floor + 1 : floor);
+        return (long) Math.rint(scaled);
+    }
+
+    /**
+     * @return the exact a * b less the rounded product, using Dekker's algorithm.
+     */
+    private static double productError(double a, double b, double product) {
+        double c = 134217729.0 * a;
+        double aHi = c - (c - a);
+        double aLo = a - aHi;
+        c = 134217729.0 * b;
+        double bHi = c - (c - b);
+        double bLo = b - bHi;
+        return ((aHi * bHi - product) + aHi * bLo + aLo * bHi) + aLo * bLo;
+    }
+
+    private static long appendDecimal(@Nullable StringBuilder sb, long address, long num, int decimals) {
+        if (sb == null)
+            return UnsafeText.appendBase10d(address, num, decimals);
+        if (num < 0) {
+            sb.append('-');
+            num = -num;
+        }
+        long tens = Maths.tens(decimals);
+        sb.append(num / tens).append('.');
+        for (long t = tens / 10; t > 0; t /= 10)
+            sb.append((char) ('0' + num / t % 10));
+        return address;
+    }
+
+    private static long appendLong(@Nullable StringBuilder sb, long address, long num) {
+        if (sb == null)
+            return UnsafeText.appendFixed(address, num);
+        sb.append(num);
+        return address;
+    }
+
+    /**
+     * Append a positive number with a comma between each group of thousands.
+     */
+    private static long appendGrouped(@Nullable StringBuilder sb, long address, long num) {
+        if (num < 1000)
+            return appendLong(sb, address, num);
+        address = appendGrouped(sb, address, num / 1000);
+        address = appendChar(sb, address, ',');
+        int rem = (int) (num % 1000);
+        address = appendChar(sb, address, (char) ('0' + rem / 100));
+        address = appendChar(sb, address, (char) ('0' + rem / 10 % 10));
+        return appendChar(sb, address, (char) ('0' + rem % 10));
+    }
+
+    private static long appendText(@Nullable StringBuilder sb, long address, String text) {
+        if (sb != null) {
+            sb.append(text);
+            return address;
+        }
+        for (int i = 0; i < text.length(); i++)
+            UNSAFE.putByte(address++, (byte) text.charAt(i));
+        return address;
+    }
+
+    private static long appendChar(@Nullable StringBuilder sb, long address, char ch) {
+        if (sb != null) {
+            sb.append(ch);
+            return address;
+        }
+        UNSAFE.putByte(address, (byte) ch);
+        return address + 1;
     }
 
     public long totalCount() {
@@ -315,11 +668,29 @@ public class Histogram implements NanoSampler {
     public void reset() {
         totalCount = overRange = 0;
 
+        clearCounts();
+    }
+
+    void clearCounts() {
         Arrays.fill(sampleCount, 0);
+        countsChanged();
     }
 
     @Override
     public void sampleNanos(long nanos) {
         sample(nanos);
     }
+
+    static final class Format {
+        final String header;
+        // whether the worst is separated by " - "
+        final boolean worstDash;
+        final double[] fractions;
+
+        Format(String header, boolean worstDash, double... fractions) {
+            this.header = header;
+            this.worstDash = worstDash;
+            this.fractions = fractions;
+        }
+    }
 }
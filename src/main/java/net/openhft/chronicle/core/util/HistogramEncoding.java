@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.util;
+
+import org.jetbrains.annotations.NotNull;
+import sun.misc.Unsafe;
+import sun.nio.ch.DirectBuffer;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
+
+/**
+ * A compact, versioned binary encoding of a {@link Histogram} which can be written to and read from a
+ * {@link ByteBuffer} or native memory without allocating.
+ * <p>
+ * After a version byte and the settings, the counts up to the last non-empty bucket are written as zig-zag
+ * varints, where a negative value is a run of that many empty buckets. A histogram of a few thousand samples
+ * typically encodes in tens of bytes.
+ */
+public enum HistogramEncoding {
+    ; // none
+
+    public static final int VERSION = 1;
+    private static final int MAX_VAR_INT = 5;
+    private static final int MAX_VAR_LONG = 10;
+    // the largest histogram decoded, so a corrupt header can't allocate an unreasonable number of buckets.
+    static final int MAX_POWERS_OF_2 = 64;
+    static final int MAX_FRACTION_BITS = 20;
+    static final int MAX_BUCKETS = 1 << 20;
+
+    /**
+     * @return the most bytes {@link #encode(Histogram, ByteBuffer)} could need for this histogram.
+     */
+    public static int maxEncodedLength(@NotNull Histogram h) {
+        return 1 + 3 * MAX_VAR_INT + 3 * MAX_VAR_LONG + MAX_VAR_LONG * (h.powersOf2() << h.fractionBits());
+    }
+
+    /**
+     * Write the histogram from the buffer's position, advancing it.
+     *
+     * @return the number of bytes written
+     * @throws BufferOverflowException if there is not enough space remaining, leaving the position unchanged.
+     */
+    public static int encode(@NotNull Histogram h, @NotNull ByteBuffer bb) throws BufferOverflowException {
+        if (bb.isReadOnly())
+            throw new IllegalArgumentException("Read only buffer");
+        Object base = base(bb);
+        long start = offset(bb);
+        long end = encode0(h, base, start, start + bb.remaining());
+        int length = (int) (end - start);
+        bb.position(bb.position() + length);
+        return length;
+    }
+
+    /**
+     * Write the histogram to native memory.
+     *
+     * @return the number of bytes written
+     * @throws BufferOverflowException if it would need more than <code>capacity</code> bytes.
+     */
+    public static long encode(@NotNull Histogram h, long address, long capacity) throws BufferOverflowException {
+        return encode0(h, null, address, address + capacity) - address;
+    }
+
+    /**
+     * Read a histogram from the buffer's position, advancing it, replacing the settings and counts of <code>h</code>.
+     *
+     * @return the number of bytes read
+     * @throws BufferUnderflowException if the encoding is truncated.
+     * @throws IllegalArgumentException if the encoding is not valid, is a different version, or has more than
+     *                                  {@value #MAX_BUCKETS} buckets.
+     * @throws ArithmeticException      if a count is too large for a Histogram, decode into a LongHistogram.
+     */
+    public static int decode(@NotNull ByteBuffer bb, @NotNull Histogram h) throws BufferUnderflowException, IllegalArgumentException {
+        Object base = base(bb);
+        long start = offset(bb);
+        long end = decode0(base, start, start + bb.remaining(), h);
+        int length = (int) (end - start);
+        bb.position(bb.position() + length);
+        return length;
+    }
+
+    /**
+     * Read a histogram from native memory, replacing the settings and counts of <code>h</code>.
+     *
+     * @return the number of bytes read
+     * @throws BufferUnderflowException if the encoding is longer than <code>capacity</code>.
+     * @throws IllegalArgumentException if the encoding is not valid, is a different version, or has more than
+     *                                  {@value #MAX_BUCKETS} buckets.
+     * @throws ArithmeticException      if a count is too large for a Histogram, decode into a LongHistogram.
+     */
+    public static long decode(long address, long capacity, @NotNull Histogram h) throws BufferUnderflowException, IllegalArgumentException {
+        return decode0(null, address, address + capacity, h) - address;
+    }
+
+    private static Object base(ByteBuffer bb) {
+        if (bb.isDirect())
+            return null;
+        if (!bb.hasArray())
+            throw new IllegalArgumentException("Read only heap buffers are not supported");
+        return bb.array();
+    }
+
+    private static long offset(ByteBuffer bb) {
+        return bb.isDirect()
+                ? ((DirectBuffer) bb).address() + bb.position()
+                : Unsafe.ARRAY_BYTE_BASE_OFFSET + bb.arrayOffset() + bb.position();
+    }
+
+    static long encode0(Histogram h, Object base, long offset, long limit) {
+        int used = h.powersOf2() << h.fractionBits();
+        while (used > 0 && h.count(used - 1) == 0)
+            used--;
+
+        if (offset >= limit)
+            throw new BufferOverflowException();
+        UNSAFE.putByte(base, offset++, (byte) VERSION);
+        offset = writeVarLong(base, offset, limit, h.powersOf2());
+        offset = writeVarLong(base, offset, limit, h.fractionBits());
+        offset = writeVarLong(base, offset, limit, zigZag(h.floor()));
+        offset = writeVarLong(base, offset, limit, h.totalCount());
+        offset = writeVarLong(base, offset, limit, h.overRange());
+        offset = writeVarLong(base, offset, limit, used);
+        for (int i = 0; i < used; ) {
+            long count = h.count(i);
+            if (count != 0) {
+                offset = writeVarLong(base, offset, limit, zigZag(count));
+                i++;
+                continue;
+            }
+            int zeros = 1;
+            while (h.count(i + zeros) == 0)
+                zeros++;
+            offset = writeVarLong(base, offset, limit, zigZag(-zeros));
+            i += zeros;
+        }
+        return offset;
+    }
+
+    static long decode0(Object base, long offset, long limit, Histogram h) {
+        if (offset >= limit)
+            throw new BufferUnderflowException();
+        int version = UNSAFE.getByte(base, offset++);
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported histogram encoding version: " + version);
+        long powersOf2 = readVarLong(base, offset, limit);
+        offset += varLongLength(powersOf2);
+        long fractionBits = readVarLong(base, offset, limit);
+        offset += varLongLength(fractionBits);
+        long zigZagFloor = readVarLong(base, offset, limit);
+        offset += varLongLength(zigZagFloor);
+        long totalCount = readVarLong(base, offset, limit);
+        offset += varLongLength(totalCount);
+        long overRange = readVarLong(base, offset, limit);
+        offset += varLongLength(overRange);
+        long used = readVarLong(base, offset, limit);
+        offset += varLongLength(used);
+        // check as longs, so a large value can't pass as a small int.
+        if (powersOf2 < 1 || powersOf2 > MAX_POWERS_OF_2 || fractionBits < 0 || fractionBits > MAX_FRACTION_BITS
+                || (powersOf2 << fractionBits) > MAX_BUCKETS || used < 0 || used > (powersOf2 << fractionBits))
+            throw new IllegalArgumentException("Invalid histogram encoding, powersOf2: " + powersOf2 + ", fractionBits: " + fractionBits + ", buckets: " + used);
+        if (used > maxBucketsIn(limit - offset))
+            throw new BufferUnderflowException();
+        if (overRange < 0 || totalCount < overRange)
+            throw new IllegalArgumentException("Invalid histogram encoding, totalCount: " + totalCount + ", overRange: " + overRange);
+
+        h.init((int) powersOf2, (int) fractionBits, overRange, totalCount, unZigZag(zigZagFloor));
+        h.clearCounts();
+        for (int i = 0; i < used; ) {
+            long encoded = readVarLong(base, offset, limit);
+            offset += varLongLength(encoded);
+            long value = unZigZag(encoded);
+            if (value > 0) {
+                h.setCount(i++, value);
+            } else if (value < 0 && i - value <= used) {
+                i -= value;
+            } else {
+                throw new IllegalArgumentException("Invalid run of empty buckets: " + -value + " at " + i);
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * @return the most buckets <code>bytes</code> can hold, as a run of empty buckets then one count.
+     */
+    static long maxBucketsIn(long bytes) {
+        if (bytes < 2)
+            return Math.max(0, bytes);
+        if (bytes > 9)
+            return Long.MAX_VALUE;
+        // a run of n empty buckets is encoded as 2n-1
+        return (1L << (7 * (bytes - 1) - 1)) + 1;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long writeVarLong(Object base, long offset, long limit, long value) {
+        while ((value & ~0x7FL) != 0) {
+            if (offset >= limit)
+                throw new BufferOverflowException();
+            UNSAFE.putByte(base, offset++, (byte) (value | 0x80));
+            value >>>= 7;
+        }
+        if (offset >= limit)
+            throw new BufferOverflowException();
+        UNSAFE.putByte(base, offset++, (byte) value);
+        return offset;
+    }
+
+    static int varLongLength(long value) {
+        return value == 0 ? 1 : (63 - Long.numberOfLeadingZeros(value)) / 7 + 1;
+    }
+
+    /**
+     * Only the shortest encoding of a value is accepted, so the caller can advance by {@link #varLongLength(long)}
+     */
+    static long readVarLong(Object base, long offset, long limit) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (offset >= limit)
+                throw new BufferUnderflowException();
+            int b = UNSAFE.getByte(base, offset++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (b == 0 && shift > 0)
+                    break;
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid varint");
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Records samples from one thread into one of two histograms, while a reporting thread periodically swaps them
+ * and reads the one no longer being recorded to.
+ * <p>
+ * The recording thread never blocks or resets a histogram. The reporting thread resets the idle histogram,
+ * makes it active, and then waits for any sample in progress on the other one to finish.
+ */
+public class IntervalHistogramRecorder implements NanoSampler {
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+    @NotNull
+    private final Histogram cumulative;
+    @NotNull
+    private volatile Histogram active;
+    @NotNull
+    private Histogram inactive;
+
+    public IntervalHistogramRecorder() {
+        this(42, 7);
+    }
+
+    public IntervalHistogramRecorder(int powersOf2, int fractionBits) {
+        this(powersOf2, fractionBits, 1.0);
+    }
+
+    public IntervalHistogramRecorder(int powersOf2, int fractionBits, double minValue) {
+        active = new Histogram(powersOf2, fractionBits, minValue);
+        inactive = new Histogram(powersOf2, fractionBits, minValue);
+        cumulative = new Histogram(powersOf2, fractionBits, minValue);
+    }
+
+    /**
+     * Record a sample from the recording thread.
+     */
+    public void sample(double value) {
+        long criticalValue = phaser.writerCriticalSectionEnter();
+        try {
+            active.sample(value);
+        } finally {
+            phaser.writerCriticalSectionExit(criticalValue);
+        }
+    }
+
+    @Override
+    public void sampleNanos(long nanos) {
+        sample(nanos);
+    }
+
+    /**
+     * Called by the reporting thread to get the samples since the last call. The histogram returned is only
+     * valid until the next call.
+     *
+     * @return the samples recorded in this interval.
+     */
+    @NotNull
+    public synchronized Histogram getIntervalHistogram() {
+        Histogram interval = active;
+        inactive.reset();
+        active = inactive;
+        phaser.flipPhase();
+        inactive = interval;
+        cumulative.add(interval);
+        return interval;
+    }
+
+    /**
+     * @return all the samples up to the last call to {@link #getIntervalHistogram()}, owned by the reporting thread.
+     */
+    @NotNull
+    public Histogram cumulativeHistogram() {
+        return cumulative;
+    }
+
+    /**
+     * @return the number of samples up to the last call to {@link #getIntervalHistogram()}
+     */
+    public synchronized long cumulativeCount() {
+        return cumulative.totalCount();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Histogram} with long counters, for runs long enough that a bucket could pass Integer.MAX_VALUE samples,
+ * e.g. a soak test at millions of samples per second for days. It uses twice the memory of a Histogram.
+ * <p>
+ * The percentiles, reports and encodings are the same as for a Histogram, but as the counts are not ints,
+ * {@link #count(int)} should be used instead of {@link #sampleCount()}, which returns a copy.
+ */
+public class LongHistogram extends Histogram {
+    @NotNull
+    private long[] counts;
+
+    public LongHistogram() {
+        this(42, 7);
+    }
+
+    public LongHistogram(int powersOf2, int fractionBits) {
+        this(powersOf2, fractionBits, 1.0);
+    }
+
+    public LongHistogram(int powersOf2, int fractionBits, double minValue) {
+        super(powersOf2, fractionBits, minValue, new int[0]);
+        counts = new long[powersOf2 << fractionBits];
+    }
+
+    @Override
+    public int sample(double time) {
+        int bucket = bucketFor(time, fractionBits(), floor());
+        if (bucket >= counts.length)
+            overRange++;
+        else if (bucket >= 0)
+            counts[bucket]++;
+        totalCount++;
+        return bucket;
+    }
+
+    @Override
+    void sample(double value, long count, double expectedInterval) {
+        int bucket = bucketFor(value, fractionBits(), floor());
+        if (bucket >= counts.length)
+            overRange += count;
+        else if (bucket >= 0)
+            counts[bucket] += count;
+        totalCount += count;
+        if (expectedInterval > 0)
+            for (double missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval)
+                sample(missing, count, 0);
+    }
+
+    @Override
+    public void add(@NotNull Histogram h) {
+        assert powersOf2() == h.powersOf2();
+        assert fractionBits() == h.fractionBits();
+        totalCount += h.totalCount();
+        overRange += h.overRange();
+        countsChanged();
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += h.count(i);
+    }
+
+    /**
+     * @return a copy of the counts, with any count over Integer.MAX_VALUE as Integer.MAX_VALUE. Changing it doesn't
+     * change this histogram.
+     * @deprecated use {@link #count(int)} which is exact and doesn't copy.
+     */
+    @Deprecated
+    @Override
+    public int[] sampleCount() {
+        int[] sampleCount = new int[counts.length];
+        for (int i = 0; i < counts.length; i++)
+            sampleCount[i] = (int) Math.min(Integer.MAX_VALUE, counts[i]);
+        return sampleCount;
+    }
+
+    @Override
+    public long count(int bucket) {
+        return counts[bucket];
+    }
+
+    @Override
+    void setCount(int bucket, long count) {
+        counts[bucket] = count;
+        countsChanged();
+    }
+
+    @Override
+    int bucketCount() {
+        return counts.length;
+    }
+
+    @Override
+    void ensureBuckets(int buckets) {
+        if (counts.length < buckets)
+            counts = new long[buckets];
+    }
+
+    @Override
+    void clearCounts() {
+        Arrays.fill(counts, 0L);
+        countsChanged();
+    }
+
+    @NotNull
+    @Override
+    Histogram newInstance() {
+        return new LongHistogram(powersOf2(), fractionBits());
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "LongHistogram{" +
+                "fractionBits=" + fractionBits() +
+                ", powersOf2=" + powersOf2() +
+                ", overRange=" + overRange +
+                ", totalCount=" + totalCount +
+                ", floor=" + floor() +
+                ", counts=" + Arrays.toString(counts) +
+                '}';
+    }
+}
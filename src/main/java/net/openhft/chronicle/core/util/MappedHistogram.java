@@ -0,0 +1,273 @@
+/*
+ * Copyright 2016-2020 Chronicle Software
+ *
+ * https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.core.util;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.Memory;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static net.openhft.chronicle.core.UnsafeMemory.UNSAFE;
+
+/**
+ * A histogram with the same buckets as {@link Histogram} whose counts are held in a memory mapped file, so
+ * several processes on the same host can sample into it concurrently while another reads percentiles live.
+ * <p>
+ * Each sample is a single atomic add to the mapped memory. The first process to open the file writes the
+ * settings to its header, and any other process opening it must use the same settings. If the header is not
+ * written within {@value #INIT_TIMEOUT_MS} ms, e.g. as the process writing it died, another process takes over.
+ */
+public class MappedHistogram extends AbstractCloseable implements NanoSampler {
+    static final long MAGIC = 0x4D48697374763031L; // MHistv01
+    // the state while the header is written, with a token for the writer in the low 32 bits.
+    static final long INITIALISING = 0x496E697400000000L; // Init
+    private static final long TOKEN_MASK = 0xFFFFFFFFL;
+    // header layout
+    private static final int STATE = 0;
+    private static final int POWERS_OF_2 = 8;
+    private static final int FRACTION_BITS = 12;
+    private static final int MIN_VALUE = 16;
+    // the counts start on their own cache line.
+    private static final int UNDER_RANGE = 64;
+    private static final int OVER_RANGE = 72;
+    private static final int BUCKETS = 128;
+    static final long INIT_TIMEOUT_MS = 10_000;
+
+    @NotNull
+    private final File file;
+    private final int powersOf2;
+    private final int fractionBits;
+    private final double minValue;
+    private final long floor;
+    private final int buckets;
+    private final long address;
+    private final long size;
+    private final Memory memory = OS.memory();
+
+    private MappedHistogram(@NotNull File file, int powersOf2, int fractionBits, double minValue, long address, long size) {
+        this.file = file;
+        this.powersOf2 = powersOf2;
+        this.fractionBits = fractionBits;
+        this.minValue = minValue;
+        this.floor = Histogram.floorFor(minValue, fractionBits);
+        this.buckets = powersOf2 << fractionBits;
+        this.address = address;
+        this.size = size;
+    }
+
+    /**
+     * Open a histogram, creating the file if it doesn't exist.
+     *
+     * @param file         to hold the counts
+     * @param powersOf2    the range of values, as for {@link Histogram}
+     * @param fractionBits the precision of values, as for {@link Histogram}
+     * @param minValue     the smallest value bucketed
+     * @throws IOException              if the file cannot be mapped
+     * @throws IllegalArgumentException if the file was created with different settings
+     */
+    @NotNull
+    public static MappedHistogram open(@NotNull File file, int powersOf2, int fractionBits, double minValue)
+            throws IOException, IllegalArgumentException {
+        return open(file, powersOf2, fractionBits, minValue, INIT_TIMEOUT_MS);
+    }
+
+    @NotNull
+    static MappedHistogram open(@NotNull File file, int powersOf2, int fractionBits, double minValue, long initTimeoutMs)
+            throws IOException, IllegalArgumentException {
+        long size = BUCKETS + 8L * (powersOf2 << fractionBits);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = OS.pageAlign(size);
+            if (raf.length() < length)
+                raf.setLength(length);
+            long address = OS.map(raf.getChannel(), FileChannel.MapMode.READ_WRITE, 0, size);
+            MappedHistogram histogram = new MappedHistogram(file, powersOf2, fractionBits, minValue, address, size);
+            try {
+                histogram.initHeader(initTimeoutMs);
+            } catch (RuntimeException e) {
+                histogram.close();
+                throw e;
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Open an existing histogram with the settings in its header, e.g. to monitor it.
+     *
+     * @throws FileNotFoundException    if the file doesn't exist
+     * @throws IllegalArgumentException if the file is not a histogram
+     */
+    @NotNull
+    public static MappedHistogram open(@NotNull File file) throws IOException, IllegalArgumentException {
+        if (!file.exists())
+            throw new FileNotFoundException(file.getAbsolutePath());
+        ByteBuffer header = ByteBuffer.allocate(BUCKETS).order(ByteOrder.nativeOrder());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.getChannel().read(header, 0);
+        }
+        if (header.position() < BUCKETS || header.getLong(STATE) != MAGIC)
+            throw new IllegalArgumentException("Not a MappedHistogram, or not initialised: " + file);
+        return open(file,
+                header.getInt(POWERS_OF_2),
+                header.getInt(FRACTION_BITS),
+                Double.longBitsToDouble(header.getLong(MIN_VALUE)));
+    }
+
+    private void initHeader(long timeoutMs) {
+        long token = INITIALISING | (ThreadLocalRandom.current().nextInt() & TOKEN_MASK);
+        long seen = -1;
+        long end = 0;
+        while (true) {
+            long state = memory.readVolatileLong(address + STATE);
+            if (state == MAGIC)
+                break;
+            boolean initialising = (state & ~TOKEN_MASK) == INITIALISING;
+            if (state != 0 && !initialising)
+                throw new IllegalArgumentException("Not a MappedHistogram: " + file);
+            if (state != seen) {
+                // wait for each writer in turn.
+                seen = state;
+                end = System.currentTimeMillis() + timeoutMs;
+            }
+            // take over from a writer which has not finished in time.
+            if (state == 0 || System.currentTimeMillis() > end) {
+                if (UNSAFE.compareAndSwapLong(null, address + STATE, state, token)) {
+                    if (initialising)
+                        Jvm.warn().on(MappedHistogram.class, "Taking over writing the header of " + file);
+                    memory.writeInt(address + POWERS_OF_2, powersOf2);
+                    memory.writeInt(address + FRACTION_BITS, fractionBits);
+                    memory.writeLong(address + MIN_VALUE, Double.doubleToRawLongBits(minValue));
+                    memory.writeOrderedLong(address + STATE, MAGIC);
+                    break;
+                }
+                continue;
+            }
+            // another process is writing the header.
+            Jvm.pause(1);
+        }
+        int powersOf2 = memory.readInt(address + POWERS_OF_2);
+        int fractionBits = memory.readInt(address + FRACTION_BITS);
+        double minValue = Double.longBitsToDouble(memory.readLong(address + MIN_VALUE));
+        if (powersOf2 != this.powersOf2 || fractionBits != this.fractionBits || Double.compare(minValue, this.minValue) != 0)
+            throw new IllegalArgumentException(file + " has powersOf2: " + powersOf2 + ", fractionBits: " + fractionBits + ", minValue: " + minValue
+                    + " not " + this.powersOf2 + ", " + this.fractionBits + ", " + this.minValue);
+    }
+
+    public int sample(double value) {
+        throwExceptionIfClosed();
+        int bucket = Histogram.bucketFor(value, fractionBits, floor);
+        long offset = bucket < 0 ? UNDER_RANGE
+                : bucket >= buckets ? OVER_RANGE
+                : BUCKETS + ((long) bucket << 3);
+        memory.addLong(address + offset, 1L);
+        return bucket;
+    }
+
+    @Override
+    public void sampleNanos(long nanos) {
+        sample(nanos);
+    }
+
+    /**
+     * @return the counts so far from all processes as a LongHistogram, as a count can be more than an int
+     */
+    @NotNull
+    public LongHistogram snapshot() {
+        return snapshot(false);
+    }
+
+    /**
+     * Take the counts so far, leaving this empty for every process. Each count is taken atomically.
+     *
+     * @return the counts so far as a LongHistogram, as a count can be more than an int
+     */
+    @NotNull
+    public LongHistogram snapshotAndReset() {
+        return snapshot(true);
+    }
+
+    @NotNull
+    private LongHistogram snapshot(boolean reset) {
+        throwExceptionIfClosed();
+        LongHistogram histogram = new LongHistogram(powersOf2, fractionBits, minValue);
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            long count = read(BUCKETS + ((long) i << 3), reset);
+            total += count;
+            histogram.setCount(i, count);
+        }
+        long overRange = read(OVER_RANGE, reset);
+        total += overRange + read(UNDER_RANGE, reset);
+        histogram.init(powersOf2, fractionBits, overRange, total, floor);
+        return histogram;
+    }
+
+    private long read(long offset, boolean reset) {
+        return reset
+                ? UNSAFE.getAndSetLong(null, address + offset, 0L)
+                : memory.readVolatileLong(address + offset);
+    }
+
+    /**
+     * @return the number of samples so far from all processes.
+     */
+    public long totalCount() {
+        throwExceptionIfClosed();
+        long total = memory.readVolatileLong(address + UNDER_RANGE) + memory.readVolatileLong(address + OVER_RANGE);
+        for (int i = 0; i < buckets; i++)
+            total += memory.readVolatileLong(address + BUCKETS + ((long) i << 3));
+        return total;
+    }
+
+    @NotNull
+    public File file() {
+        return file;
+    }
+
+    public int powersOf2() {
+        return powersOf2;
+    }
+
+    public int fractionBits() {
+        return fractionBits;
+    }
+
+    public double minValue() {
+        return minValue;
+    }
+
+    @Override
+    protected void performClose() {
+        try {
+            OS.unmap(address, size);
+        } catch (IOException e) {
+            Jvm.warn().on(MappedHistogram.class, "Error on unmap of " + file, e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package net.openhft.chronicle.core;
+
+import net.openhft.chronicle.core.io.ReferenceOwner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel.MapMode;
+
+import static org.junit.Assert.*;
+
+public class MappedRegionCacheTest {
+    private File file;
+    private RandomAccessFile raf;
+    private long chunk;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(OS.TARGET, "MappedRegionCacheTest-" + System.nanoTime() + ".deleteme");
+        file.deleteOnExit();
+        raf = new RandomAccessFile(file, "rw");
+        chunk = OS.mapAlignment();
+        raf.setLength(8 * chunk);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        raf.close();
+        file.delete();
+    }
+
+    @Test
+    public void reusesMappings() throws IOException {
+        long mapped = OS.memoryMapped();
+        try (MappedRegionCache cache = new MappedRegionCache(4 * chunk)) {
+            ReferenceOwner a = ReferenceOwner.temporary("a");
+            ReferenceOwner b = ReferenceOwner.temporary("b");
+            MappedRegion r1 = cache.acquire(file, raf.getChannel(), MapMode.READ_WRITE, 0, chunk, a);
+            OS.memory().writeLong(r1.address(), 12345);
+            MappedRegion r2 = cache.acquire(file, raf.getChannel(), MapMode.READ_WRITE, 0, chunk, b);
+            assertSame(r1, r2);
+            assertEquals(3, r1.refCount());
+            assertEquals(1, cache.misses());
+            assertEquals(1, cache.hits());
+            assertEquals(mapped + chunk, OS.memoryMapped());
+
+            r1.release(a);
+            r2.release(b);
+            assertEquals(1, r1.refCount());
+            // still cached
+            MappedRegion r3 = cache.acquire(file, raf.getChannel(), MapMode.READ_WRITE, 0, chunk, a);
+            assertSame(r1, r3);
+            assertEquals(12345, OS.memory().readLong(r3.address()));
+            r3.release(a);
+        }
+        assertEquals(mapped, OS.memoryMapped());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        long mapped = OS.memoryMapped();
+        try (MappedRegionCache cache = new MappedRegionCache(2 * chunk)) {
+            ReferenceOwner a = ReferenceOwner.temporary("a");
+            MappedRegion r0 = cache.acquire(file, raf.getChannel(), MapMode.READ_WRITE, 0, chunk, a);
+            MappedRegion r1 = cache.acquire(file, raf.getChannel(), MapMode.READ_WRITE, chunk, chunk, a);
+            r1.release(a);
+            // r0 is still in use so r1 is evicted even though r0 is older
+            MappedRegion r2 = cache.acquire(file, raf.getChannel(), MapMode.READ_WRITE, 2 * chunk, chunk, a);
+            r2.release(a);
+            assertEquals(1, cache.evictions());
+            assertEquals(0, r1.refCount());
+            assertEquals(2, cache.regionCount());
+            assertEquals(2 * chunk, cache.mappedBytes());
+
+            // evicted but still mapped until released
+            r0.release(a);
+            cache.evictAllUnused();
+            assertEquals(0, r0.refCount());
+            assertEquals(0, cache.regionCount());
+            assertEquals(mapped, OS.memoryMapped());
+        }
+    }
+
+    @Test
+    public void evictsWhenReleasedOverBudget() throws IOException {
+        long mapped = OS.memoryMapped();
+        try (MappedRegionCache cache = new MappedRegionCache(chunk)) {
+            ReferenceOwner a = ReferenceOwner.temporary("a");
+            MappedRegion r0 = cache.acquire(file, raf.getChannel(), MapMode.READ_WRITE, 0, chunk, a);
+            MappedRegion r1 = cache.acquire(file, raf.getChannel(), MapMode.READ_WRITE, chunk, chunk, a);
+            // both in use so over budget
+            assertEquals(2 * chunk, cache.mappedBytes());
+
+            r0.release(a);
+            assertEquals(0, r0.refCount());
+            assertEquals(1, cache.evictions());
+            assertEquals(chunk, cache.mappedBytes());
+            assertEquals(mapped + chunk, OS.memoryMapped());
+
+            // back within budget so kept
+            r1.release(a);
+            assertEquals(1, r1.refCount());
+            assertEquals(1, cache.regionCount());
+        }
+        assertEquals(mapped, OS.memoryMapped());
+    }
+
+    @Test
+    public void evictedOnlyUnmappedWhenReleased() throws IOException {
+        long mapped = OS.memoryMapped();
+        ReferenceOwner a = ReferenceOwner.temporary("a");
+        MappedRegion r0;
+        try (MappedRegionCache cache = new MappedRegionCache(chunk)) {
+            r0 = cache.acquire(file, raf.getChannel(), MapMode.READ_WRITE, 0, chunk, a);
+        }
+        assertEquals(1, r0.refCount());
+        assertEquals(mapped + chunk, OS.memoryMapped());
+        OS.memory().writeLong(r0.address(), 1);
+        r0.release(a);
+        assertEquals(mapped, OS.memoryMapped());
+    }
+}
@@ -29,8 +29,12 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 import java.util.stream.DoubleStream;
 
 import static org.junit.Assert.*;
@@ -252,6 +256,57 @@ public class MathsTest {
         System.out.printf("Average time %.3f us%n", time / timeCount / 1e3);
     }
 
+    @Test
+    public void hash64Bytes() {
+        byte[] bytes = new byte[40];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) (i * 31 + 1);
+        Memory memory = OS.memory();
+        long address = memory.allocate(bytes.length);
+        try {
+            memory.copyMemory(bytes, 0, address, bytes.length);
+            Set<Long> hashes = new HashSet<>();
+            for (int len = 0; len <= 32; len++) {
+                long hash = Maths.hash64(bytes, 3, len);
+                assertEquals(hash, Maths.hash64Memory(address + 3, len));
+                assertTrue(hashes.add(hash));
+                // every byte contributes to the hash
+                for (int i = 3; i < 3 + len; i++) {
+                    bytes[i]++;
+                    assertNotEquals(hash, Maths.hash64(bytes, 3, len));
+                    bytes[i]--;
+                }
+            }
+        } finally {
+            memory.freeMemory(address, bytes.length);
+        }
+    }
+
+    @Test
+    public void fastHash64() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            String s = sb.toString();
+            byte[] latin1 = s.getBytes(StandardCharsets.ISO_8859_1);
+            long hash = Maths.hash64(latin1, 0, latin1.length);
+            assertEquals(hash, Maths.fastHash64(s));
+            assertEquals(hash, Maths.fastHash64(sb));
+            assertEquals(hash, Maths.fastHash64(CharBuffer.wrap(s)));
+
+            String s2 = s + '\u2022';
+            byte[] utf16 = s2.getBytes(StandardCharsets.UTF_16LE);
+            long hash2 = Maths.hash64(utf16, 0, utf16.length);
+            assertEquals(hash2, Maths.fastHash64(s2));
+            assertEquals(hash2, Maths.fastHash64(new StringBuilder(s2)));
+            sb.append((char) ('0' + i % 64 + (i % 3 == 0 ? 128 : 0)));
+        }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void hash64BytesOutOfRange() {
+        Maths.hash64(new byte[8], 4, 5);
+    }
+
     @Test
     public void testDivideRoundUp() {
         assertEquals(2, Maths.divideRoundUp(10, 5));
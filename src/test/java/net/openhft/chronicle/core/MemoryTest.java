@@ -21,6 +21,12 @@ package net.openhft.chronicle.core;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+
 public class MemoryTest {
     @Test
     public void testHeapUsed() {
@@ -41,4 +47,31 @@ public class MemoryTest {
             memory.freeMemory(address, 1024);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void tagged() throws Exception {
+        Memory memory = OS.memory();
+        MemoryTag tag = MemoryTag.of("MemoryTest.tagged");
+        long used = memory.nativeMemoryUsed();
+        long a = memory.allocate(1000, tag);
+        long b = memory.allocate(24, tag);
+        assertEquals(used + 1024, memory.nativeMemoryUsed());
+        assertEquals(1024, tag.bytesUsed());
+        assertEquals(2, tag.allocations());
+
+        Map<String, MemoryTag.Usage> usage = Jvm.usedNativeMemoryByTag();
+        assertEquals(1024, usage.get("MemoryTest.tagged").bytesUsed());
+
+        Jvm.registerNativeMemoryMXBean();
+        Jvm.registerNativeMemoryMXBean();
+        Object used2 = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("chronicle:type=NativeMemory"), "UsedNativeMemory");
+        assertEquals(used + 1024, used2);
+
+        memory.freeMemory(a, 1000, tag);
+        memory.freeMemory(b, 24, tag);
+        assertEquals(used, memory.nativeMemoryUsed());
+        assertEquals(0, tag.bytesUsed());
+        assertEquals(0, tag.allocations());
+    }
+}
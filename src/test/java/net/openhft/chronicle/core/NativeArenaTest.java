@@ -0,0 +1,90 @@
+package net.openhft.chronicle.core;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class NativeArenaTest {
+
+    @Test
+    public void blockSizes() {
+        try (NativeArena arena = new NativeArena(1 << 16, 1 << 10)) {
+            assertEquals(16, arena.blockSizeFor(1));
+            assertEquals(16, arena.blockSizeFor(16));
+            assertEquals(32, arena.blockSizeFor(17));
+            assertEquals(1024, arena.blockSizeFor(1000));
+            assertEquals(1024, arena.blockSizeFor(1024));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLarge() {
+        try (NativeArena arena = new NativeArena(1 << 16, 1 << 10)) {
+            arena.allocate(1025);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notPowerOf2() {
+        new NativeArena(1000, 16);
+    }
+
+    @Test
+    public void allocateAndReuse() {
+        try (NativeArena arena = new NativeArena(1 << 16, 1 << 10)) {
+            Set<Long> addresses = new HashSet<>();
+            for (int i = 0; i < 10_000; i++) {
+                long address = arena.allocate(24);
+                assertEquals(0, address & 7);
+                OS.memory().writeLong(address, i);
+                OS.memory().writeLong(address + 16, i);
+                assertTrue(addresses.add(address));
+            }
+            long reserved = arena.reservedBytes();
+            assertEquals(10_000 * 32, reserved, 1 << 16);
+
+            for (long address : addresses)
+                arena.freeMemory(address, 24);
+            Set<Long> addresses2 = new HashSet<>();
+            for (int i = 0; i < 10_000; i++)
+                assertTrue(addresses2.add(arena.allocate(24)));
+            // no more chunks were needed
+            assertEquals(reserved, arena.reservedBytes());
+        }
+    }
+
+    @Test
+    public void freeOnAnotherThread() throws InterruptedException {
+        try (NativeArena arena = new NativeArena(1 << 16, 1 << 10)) {
+            long[] addresses = new long[1000];
+            for (int i = 0; i < addresses.length; i++)
+                addresses[i] = arena.allocate(100);
+            Thread t = new Thread(() -> {
+                for (long address : addresses)
+                    arena.freeMemory(address, 100);
+            });
+            t.start();
+            t.join();
+            long reserved = arena.reservedBytes();
+            // blocks spilled to the shared list are reused by this thread.
+            for (int i = 0; i < addresses.length - 64; i++)
+                arena.allocate(100);
+            assertEquals(reserved, arena.reservedBytes());
+        }
+    }
+
+    @Test
+    public void closeReleasesNativeMemory() {
+        long used = OS.memory().nativeMemoryUsed();
+        NativeArena arena = new NativeArena(1 << 16, 1 << 10);
+        for (int i = 0; i < 1000; i++)
+            arena.allocate(512);
+        assertEquals(used + arena.reservedBytes(), OS.memory().nativeMemoryUsed());
+        arena.close();
+        assertEquals(used, OS.memory().nativeMemoryUsed());
+        assertEquals(0, arena.reservedBytes());
+    }
+}
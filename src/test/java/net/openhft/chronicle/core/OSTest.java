@@ -36,7 +36,7 @@ import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.List;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class OSTest {
 
@@ -155,4 +155,102 @@ public class OSTest {
         }
     }
 
+    @Test
+    public void testMapWithOptions() throws IOException {
+        File file = new File(OS.TARGET, getClass().getName() + "." + testName.getMethodName() + ".deleteme");
+        file.deleteOnExit();
+
+        try (RandomAccessFile rw = new RandomAccessFile(file, "rw")) {
+            long length = 64 * OS.pageSize();
+            rw.setLength(length);
+            rw.writeLong(0x0102030405060708L);
+            FileChannel fc = rw.getChannel();
+
+            long pages = OS.preTouchedPages();
+            MapOptions options = new MapOptions()
+                    .preTouch(true)
+                    .advice(MapOptions.Advice.SEQUENTIAL)
+                    .willNeed(true)
+                    .dontFork(true);
+            long address = OS.map(fc, MapMode.READ_WRITE, 0, length, options);
+            assertEquals(pages + 64, OS.preTouchedPages());
+            // pre-touching doesn't change the contents
+            for (int i = 0; i < 8; i++)
+                assertEquals(i + 1, OS.memory().readByte(address + i));
+            OS.unmap(address, length);
+        }
+    }
+
+    @Test
+    public void testMappedPreToucher() throws IOException {
+        File file = new File(OS.TARGET, getClass().getName() + "." + testName.getMethodName() + ".deleteme");
+        file.deleteOnExit();
+
+        try (RandomAccessFile rw = new RandomAccessFile(file, "rw")) {
+            int pageSize = OS.pageSize();
+            long length = 256 * pageSize;
+            rw.setLength(length);
+            long address = OS.map(rw.getChannel(), MapMode.READ_WRITE, 0, length);
+            try (MappedPreToucher preToucher = new MappedPreToucher("pretoucher", address, length, 16 * pageSize, true)) {
+                for (long pos = 0; pos < length; pos += 8) {
+                    OS.memory().writeLong(address + pos, pos);
+                    preToucher.writePosition(pos);
+                }
+                long end = System.currentTimeMillis() + 5000;
+                while (preToucher.touchedPosition() < length && System.currentTimeMillis() < end)
+                    Jvm.pause(1);
+                assertEquals(length, preToucher.touchedPosition());
+            }
+            for (long pos = 0; pos < length; pos += pageSize)
+                assertEquals(pos, OS.memory().readLong(address + pos));
+            OS.unmap(address, length);
+        }
+    }
+
+    @Test
+    public void hugePageAlignedAndLocked() {
+        long used = OS.memory().nativeMemoryUsed();
+        long size = 3 << 20;
+        long address = OS.allocateHugePageAligned(size);
+        try {
+            assertEquals(0, address & (OS.HUGE_PAGE_SIZE - 1));
+            OS.memory().setMemory(address, 4 << 20, (byte) 1);
+
+            long locked = OS.lockedBytes();
+            if (OS.lock(address, size)) {
+                assertEquals(locked + size, OS.lockedBytes());
+                assertTrue(OS.unlock(address, size));
+            }
+            assertEquals(locked, OS.lockedBytes());
+            // unlocking what was never locked doesn't reduce the count
+            OS.unlock(address, size);
+            assertEquals(locked, OS.lockedBytes());
+        } finally {
+            OS.freeHugePageAligned(address, size);
+        }
+        assertEquals(used, OS.memory().nativeMemoryUsed());
+    }
+
+    @Test
+    public void preallocate() throws IOException {
+        File file = new File(OS.TARGET, getClass().getName() + "." + testName.getMethodName() + ".deleteme");
+        file.deleteOnExit();
+
+        try (RandomAccessFile rw = new RandomAccessFile(file, "rw")) {
+            FileChannel fc = rw.getChannel();
+            rw.writeLong(12345);
+            OS.preallocate(fc, 0, 1 << 20);
+            assertEquals(1 << 20, fc.size());
+            OS.writeZeros(fc, 0, 3 << 20);
+            assertEquals(3 << 20, fc.size());
+            rw.seek(0);
+            assertEquals(12345, rw.readLong());
+
+            FileGrowthPolicy policy = new FileGrowthPolicy(fc, 1 << 20, 2 << 20);
+            assertFalse(policy.ensureCapacity(1 << 20));
+            assertTrue(policy.ensureCapacity((1 << 20) + 1));
+            assertEquals(4 << 20, policy.allocated());
+            assertEquals(4 << 20, fc.size());
+        }
+    }
 }
@@ -0,0 +1,114 @@
+package net.openhft.chronicle.core;
+
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class UnmapServiceTest {
+
+    @Test
+    public void unmapInBackground() throws IOException {
+        File file = new File(OS.TARGET, "UnmapServiceTest.unmapInBackground.deleteme");
+        file.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long size = 16 * OS.pageSize();
+            raf.setLength(size);
+            long mapped = OS.memoryMapped();
+            UnmapService service = new UnmapService("test-unmap", 4);
+            for (int i = 0; i < 10; i++) {
+                long address = OS.map(raf.getChannel(), FileChannel.MapMode.READ_WRITE, 0, size);
+                OS.memory().writeLong(address, i);
+                service.unmap(address, size);
+            }
+            service.clean(ByteBuffer.allocateDirect(1024));
+            service.close();
+
+            assertEquals(mapped, OS.memoryMapped());
+            assertEquals(11, service.unmapCount());
+            assertEquals(0, service.queueDepth());
+            assertTrue(service.maxQueueDepth() <= 4);
+            assertTrue(service.maxLatencyNanos() > 0);
+            assertTrue(service.totalLatencyNanos() >= service.maxLatencyNanos());
+        }
+    }
+
+    @Test
+    public void callerRunsWhenClosed() throws IOException {
+        File file = new File(OS.TARGET, "UnmapServiceTest.callerRunsWhenClosed.deleteme");
+        file.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long size = OS.pageSize();
+            raf.setLength(size);
+            long mapped = OS.memoryMapped();
+            UnmapService service = new UnmapService("test-unmap", 4);
+            service.close();
+            long address = OS.map(raf.getChannel(), FileChannel.MapMode.READ_WRITE, 0, size);
+            service.unmap(address, size);
+            assertEquals(mapped, OS.memoryMapped());
+            assertEquals(1, service.callerRunCount());
+        }
+    }
+
+    @Test
+    public void keepsRunningWhenInterrupted() throws InterruptedException {
+        try (UnmapService service = new UnmapService("test-unmap-interrupted", 4)) {
+            service.thread().interrupt();
+            Thread.sleep(50);
+            service.clean(ByteBuffer.allocateDirect(1024));
+            for (int i = 0; i < 100 && service.unmapCount() == 0; i++)
+                Thread.sleep(10);
+            assertEquals(1, service.unmapCount());
+            assertEquals(0, service.callerRunCount());
+        }
+    }
+
+    @Test
+    public void defaultServiceIsReplacedWhenClosed() {
+        AbstractCloseable.enableCloseableTracing();
+        UnmapService service = UnmapService.defaultService();
+        // not reported as left open
+        AbstractCloseable.assertCloseablesClosed();
+        assertFalse(service.isClosed());
+
+        service.close();
+        UnmapService service2 = UnmapService.defaultService();
+        assertNotSame(service, service2);
+        assertFalse(service2.isClosed());
+    }
+
+    @Test
+    public void submitWhileClosing() throws IOException, InterruptedException {
+        File file = new File(OS.TARGET, "UnmapServiceTest.submitWhileClosing.deleteme");
+        file.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long size = OS.pageSize();
+            raf.setLength(size);
+            long mapped = OS.memoryMapped();
+            for (int j = 0; j < 20; j++) {
+                UnmapService service = new UnmapService("test-unmap", 4);
+                Thread t = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 50; i++)
+                            service.unmap(OS.map(raf.getChannel(), FileChannel.MapMode.READ_WRITE, 0, size), size);
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                });
+                t.start();
+                service.close();
+                t.join();
+                assertEquals(mapped, OS.memoryMapped());
+            }
+        }
+    }
+}
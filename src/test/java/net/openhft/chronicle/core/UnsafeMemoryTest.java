@@ -2,7 +2,9 @@ package net.openhft.chronicle.core;
 
 import org.junit.Test;
 
-import static org.junit.Assert.assertEquals;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
 
 public class UnsafeMemoryTest {
     static final long addr = UnsafeMemory.UNSAFE.allocateMemory(128);
@@ -175,4 +177,80 @@ public class UnsafeMemoryTest {
         for (int i = 0; i <= 64; i += 8)
             UnsafeMemory.INSTANCE.addLong(addr + i, 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void equalsCompareMismatch() {
+        Memory memory = UnsafeMemory.INSTANCE;
+        long a = memory.allocate(100), b = memory.allocate(100);
+        try {
+            byte[] bytes = new byte[100];
+            for (int i = 0; i < 100; i++) {
+                bytes[i] = (byte) (i * 7);
+                memory.writeByte(a + i, bytes[i]);
+                memory.writeByte(b + i, bytes[i]);
+            }
+            assertTrue(memory.equals(a, b, 100));
+            assertTrue(memory.equals(bytes, 0, a, 100));
+            assertEquals(0, memory.compare(a, b, 100));
+            assertEquals(-1, memory.mismatch(a, b, 100));
+            for (int i = 0; i < 100; i++) {
+                memory.writeByte(b + i, (byte) 0x80);
+                assertEquals(i, memory.mismatch(a, b, 100));
+                assertEquals(i, memory.mismatch(bytes, 0, b, 100));
+                assertFalse(memory.equals(a, b, 100));
+                assertTrue(memory.equals(a, b, i));
+                int expected = Integer.signum((bytes[i] & 0xFF) - 0x80);
+                assertEquals(expected, Integer.signum(memory.compare(a, b, 100)));
+                assertEquals(-expected, Integer.signum(memory.compare(b, a, 100)));
+                assertEquals(expected, Integer.signum(memory.compare(bytes, 0, b, 100)));
+                memory.writeByte(b + i, bytes[i]);
+            }
+        } finally {
+            memory.freeMemory(a, 100);
+            memory.freeMemory(b, 100);
+        }
+    }
+
+    @Test
+    public void indexOf() {
+        Memory memory = UnsafeMemory.INSTANCE;
+        long a = memory.allocate(100);
+        try {
+            byte[] bytes = new byte[100];
+            memory.setMemory(a, 100, (byte) 1);
+            Arrays.fill(bytes, (byte) 1);
+            assertEquals(-1, memory.indexOf(a, 100, (byte) 0));
+            for (int i = 99; i >= 0; i--) {
+                memory.writeByte(a + i, (byte) 0);
+                bytes[i] = 0;
+                assertEquals(i, memory.indexOf(a, 100, (byte) 0));
+                assertEquals(i, memory.indexOf(bytes, 0, 100, (byte) 0));
+                assertEquals(Math.max(i, 3) - 3, memory.indexOf(bytes, 3, 97, (byte) 0));
+                assertEquals(-1, memory.indexOf(a, i, (byte) 0));
+            }
+            memory.writeByte(a + 50, (byte) 0xFF);
+            assertEquals(50, memory.indexOf(a, 100, (byte) 0xFF));
+        } finally {
+            memory.freeMemory(a, 100);
+        }
+    }
+
+    @Test
+    public void largeMismatchAndIndexOf() {
+        Memory memory = UnsafeMemory.INSTANCE;
+        long length = (5 << 20) / 2 + 3;
+        long a = memory.allocate(length), b = memory.allocate(length);
+        try {
+            memory.setMemory(a, length, (byte) 0);
+            memory.setMemory(b, length, (byte) 0);
+            assertTrue(memory.equals(a, b, length));
+            memory.writeByte(b + length - 1, (byte) 1);
+            assertEquals(length - 1, memory.mismatch(a, b, length));
+            assertEquals(length - 1, memory.indexOf(b, length, (byte) 1));
+            assertTrue(memory.compare(a, b, length) < 0);
+        } finally {
+            memory.freeMemory(a, length);
+            memory.freeMemory(b, length);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class StringInternerTest {
     @Test
@@ -32,4 +33,17 @@ public class StringInternerTest {
         }
         assertEquals(82, si.valueCount());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testInternFastHash() {
+        @NotNull StringInterner si = new StringInterner(128, StringHash.FAST);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.setLength(0);
+            sb.append("key-").append(i);
+            String s = si.intern(sb);
+            assertEquals(sb.toString(), s);
+            assertSame(s, si.intern(s));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package net.openhft.chronicle.core.time;
+
+import net.openhft.chronicle.core.util.Histogram;
+
+/**
+ * Samples how far the BackgroundTimeProvider and CachedTimeProvider are from the SystemTimeProvider.
+ */
+public class CachedTimeProviderMain {
+    public static void main(String[] args) {
+        int cpu = Integer.getInteger("cpu", -1);
+        try (CachedTimeProvider cached = new CachedTimeProvider(CachedTimeProvider.SPIN_RESOLUTION_NS, cpu)) {
+            Histogram cachedBehind = new Histogram(32, 7);
+            Histogram cachedAhead = new Histogram(32, 7);
+            Histogram backgroundBehind = new Histogram(32, 7);
+            Histogram backgroundAhead = new Histogram(32, 7);
+            for (int i = 0; i < 10_000_000; i++) {
+                long system = SystemTimeProvider.INSTANCE.currentTimeNanos();
+                sample(system - cached.currentTimeNanos(), cachedBehind, cachedAhead);
+                sample(system - BackgroundTimeProvider.INSTANCE.currentTimeNanos(), backgroundBehind, backgroundAhead);
+            }
+            System.out.println("cached behind ns: " + cachedBehind.toLongMicrosFormat(d -> d));
+            System.out.println("cached ahead ns: " + cachedAhead.toLongMicrosFormat(d -> d));
+            System.out.println("background behind ns: " + backgroundBehind.toLongMicrosFormat(d -> d));
+            System.out.println("background ahead ns: " + backgroundAhead.toLongMicrosFormat(d -> d));
+        }
+    }
+
+    static void sample(long diff, Histogram behind, Histogram ahead) {
+        if (diff >= 0)
+            behind.sample(diff);
+        else
+            ahead.sample(-diff);
+    }
+}
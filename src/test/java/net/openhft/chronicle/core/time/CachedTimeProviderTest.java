@@ -0,0 +1,55 @@
+package net.openhft.chronicle.core.time;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.OS;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CachedTimeProviderTest {
+
+    @Test
+    public void closeToSystemTime() {
+        try (CachedTimeProvider tp = new CachedTimeProvider(100_000, -1)) {
+            long last = 0;
+            for (int i = 0; i < 20; i++) {
+                long time = tp.currentTimeNanos();
+                assertTrue(time >= last);
+                last = time;
+                long now = SystemTimeProvider.INSTANCE.currentTimeNanos();
+                // allow for the resolution and the ticker not being scheduled on a busy machine.
+                assertEquals(now, time, 50_000_000);
+                Jvm.pause(5);
+            }
+            assertTrue(tp.currentTimeNanos() > tp.currentTimeMicros());
+            assertEquals(tp.currentTimeMicros() / 1000, tp.currentTimeMillis(), 1);
+        }
+    }
+
+    @Test
+    public void ticks() {
+        try (CachedTimeProvider tp = new CachedTimeProvider(1_000_000, -1)) {
+            long start = tp.currentTimeNanos();
+            Jvm.pause(20);
+            assertTrue(tp.currentTimeNanos() > start);
+        }
+    }
+
+    @Test
+    public void shared() throws IOException {
+        File file = new File(OS.getTarget(), "CachedTimeProviderTest-" + System.nanoTime());
+        try (CachedTimeProvider ticker = CachedTimeProvider.shared(file, 1_000_000, -1);
+             CachedTimeProvider reader = CachedTimeProvider.readShared(file)) {
+            long start = reader.currentTimeNanos();
+            assertEquals(ticker.currentTimeNanos(), start, 10_000_000);
+            Jvm.pause(20);
+            assertTrue(reader.currentTimeNanos() > start);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package net.openhft.chronicle.core.time;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CalibratedTimeProviderTest {
+    static final long WALL_START = 1_600_000_000_000_000_000L;
+
+    @Test
+    public void closeToSystemTime() {
+        CalibratedTimeProvider tp = new CalibratedTimeProvider();
+        long last = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long time = tp.currentTimeNanos();
+            assertTrue(time >= last);
+            last = time;
+        }
+        // allow for the machine being busy.
+        assertEquals(System.currentTimeMillis(), tp.currentTimeMillis(), 10);
+    }
+
+    @Test
+    public void tracksTheWallClock() {
+        FakeClock clock = new FakeClock();
+        CalibratedTimeProvider tp = clock.provider();
+        for (int i = 0; i < 2_000; i++) {
+            clock.advance(123_457);
+            assertEquals(clock.wallNanos(), tp.currentTimeNanos(), 50_000);
+        }
+        assertEquals(0, tp.jumpsForward() + tp.jumpsBack());
+        assertTrue(tp.calibrations() > 200);
+    }
+
+    @Test
+    public void stepForward() {
+        FakeClock clock = new FakeClock();
+        CalibratedTimeProvider tp = clock.provider();
+        clock.advance(10_000_000);
+        tp.currentTimeNanos();
+        clock.wallOffset += 100_000_000;
+        clock.advance(1_000_000);
+        long time = tp.currentTimeNanos();
+        assertEquals(1, tp.jumpsForward());
+        assertEquals(clock.wallNanos(), time, 1_000_000);
+    }
+
+    @Test
+    public void slewsBack() {
+        FakeClock clock = new FakeClock();
+        CalibratedTimeProvider tp = clock.provider();
+        clock.advance(10_000_000);
+        long last = tp.currentTimeNanos();
+        clock.wallOffset -= 5_000_000;
+        // 5 ms at 500 ppm takes 10 seconds
+        for (int i = 0; i < 12_000; i++) {
+            clock.advance(1_000_000);
+            long time = tp.currentTimeNanos();
+            assertTrue(time > last);
+            last = time;
+        }
+        assertEquals(1, tp.jumpsBack());
+        // the running minimum creeps up by up to MAX_DRIFT_PPM, 200 ppm, between samples
+        assertEquals(0, tp.slewRemainingNanos(), 1_000);
+        assertEquals(clock.wallNanos(), tp.currentTimeNanos(), 1_000_000);
+    }
+
+    @Test
+    public void measuresDrift() {
+        measuresDrift(100);
+        measuresDrift(-100);
+    }
+
+    private void measuresDrift(double ppm) {
+        FakeClock clock = new FakeClock();
+        clock.ppm = ppm;
+        CalibratedTimeProvider tp = clock.provider();
+        Random rand = new Random(1);
+        for (int i = 0; i < 60_000; i++) {
+            clock.advance(500_000 + rand.nextInt(1_000_000));
+            assertEquals(clock.wallNanos(), tp.currentTimeNanos(), 50_000);
+        }
+        assertEquals(ppm, tp.driftPpm(), 20);
+        assertEquals(0, tp.jumpsForward() + tp.jumpsBack());
+    }
+
+    static final class FakeClock {
+        long nanos = 1_000_000_000;
+        long wallOffset = WALL_START - nanos;
+        double ppm = 0;
+
+        CalibratedTimeProvider provider() {
+            return new CalibratedTimeProvider(this::nanoTime, this::currentTimeMillis,
+                    CalibratedTimeProvider.DEFAULT_CALIBRATION_INTERVAL_NS,
+                    CalibratedTimeProvider.DEFAULT_SLEW_PPM,
+                    CalibratedTimeProvider.DEFAULT_JUMP_THRESHOLD_NS);
+        }
+
+        void advance(long nanos) {
+            this.nanos += nanos;
+        }
+
+        long nanoTime() {
+            return nanos += 100;
+        }
+
+        long wallNanos() {
+            return nanos + wallOffset + (long) ((nanos - 1_000_000_000) * ppm / 1e6);
+        }
+
+        long currentTimeMillis() {
+            return wallNanos() / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.openhft.chronicle.core.time;
+
+import net.openhft.chronicle.core.OS;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedUniqueMicroTimeProviderTest {
+
+    @Test
+    public void uniqueBetweenMappings() throws IOException, InterruptedException {
+        File file = new File(OS.getTarget(), "MappedUniqueMicroTimeProviderTest-" + System.nanoTime());
+        // each mapping stands in for another process.
+        try (MappedUniqueMicroTimeProvider tp1 = MappedUniqueMicroTimeProvider.open(file);
+             MappedUniqueMicroTimeProvider tp2 = MappedUniqueMicroTimeProvider.open(file)) {
+            int count = 100_000;
+            long[] times1 = new long[count];
+            long[] times2 = new long[count];
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < count; i++)
+                    times2[i] = tp2.currentTimeMicros();
+            });
+            t.start();
+            for (int i = 0; i < count; i++)
+                times1[i] = tp1.currentTimeMicros();
+            t.join();
+
+            Set<Long> all = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    assertTrue(times1[i] > times1[i - 1]);
+                    assertTrue(times2[i] > times2[i - 1]);
+                }
+                all.add(times1[i]);
+                all.add(times2[i]);
+            }
+            assertEquals(2 * count, all.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void continuesAfterReopening() throws IOException {
+        File file = new File(OS.getTarget(), "MappedUniqueMicroTimeProviderTest-" + System.nanoTime());
+        SetTimeProvider stp = new SetTimeProvider(1_000_000_000L);
+        try {
+            long last;
+            try (MappedUniqueMicroTimeProvider tp = MappedUniqueMicroTimeProvider.open(file).provider(stp)) {
+                assertEquals(1_000_000, tp.currentTimeMicros());
+                last = tp.currentTimeMicros();
+                assertEquals(1_000_001, last);
+            }
+            try (MappedUniqueMicroTimeProvider tp = MappedUniqueMicroTimeProvider.open(file).provider(stp)) {
+                assertEquals(last + 1, tp.currentTimeMicros());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void closeWhileInUse() throws IOException, InterruptedException {
+        File file = new File(OS.getTarget(), "MappedUniqueMicroTimeProviderTest-" + System.nanoTime());
+        long mapped = OS.memoryMapped();
+        try {
+            MappedUniqueMicroTimeProvider tp = MappedUniqueMicroTimeProvider.open(file);
+            Thread[] ts = new Thread[4];
+            for (int t = 0; t < ts.length; t++) {
+                ts[t] = new Thread(() -> {
+                    try {
+                        while (true)
+                            tp.currentTimeMicros();
+                    } catch (IllegalStateException expected) {
+                        // closed
+                    }
+                });
+                ts[t].start();
+            }
+            Thread.sleep(20);
+            tp.close();
+            for (Thread t : ts)
+                t.join();
+            assertEquals(mapped, OS.memoryMapped());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package net.openhft.chronicle.core.time;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(Parameterized.class)
+public class PerThreadUniqueTimeProviderTest {
+
+    private final IntFunction<TimeProvider> create;
+    private final ToLongFunction<TimeProvider> stamp;
+
+    public PerThreadUniqueTimeProviderTest(String name, IntFunction<TimeProvider> create, ToLongFunction<TimeProvider> stamp) {
+        this.create = create;
+        this.stamp = stamp;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+                {"PerThreadUniqueMicroTimeProvider",
+                        (IntFunction<TimeProvider>) PerThreadUniqueMicroTimeProvider::new,
+                        (ToLongFunction<TimeProvider>) TimeProvider::currentTimeMicros},
+                {"UniqueNanoTimeProvider",
+                        (IntFunction<TimeProvider>) UniqueNanoTimeProvider::new,
+                        (ToLongFunction<TimeProvider>) TimeProvider::currentTimeNanos},
+        });
+    }
+
+    private static TimeProvider provider(TimeProvider tp, TimeProvider provider) {
+        if (tp instanceof PerThreadUniqueMicroTimeProvider)
+            return ((PerThreadUniqueMicroTimeProvider) tp).provider(provider);
+        return ((UniqueNanoTimeProvider) tp).provider(provider);
+    }
+
+    @Test
+    public void increasing() {
+        TimeProvider tp = create.apply(16);
+        long last = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long time = stamp.applyAsLong(tp);
+            assertTrue(time > last);
+            last = time;
+        }
+    }
+
+    @Test
+    public void uniqueAcrossThreads() throws InterruptedException {
+        TimeProvider tp = create.apply(16);
+        int threads = 4, count = 100_000;
+        long[][] times = new long[threads][count];
+        Thread[] ts = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long[] time = times[t];
+            ts[t] = new Thread(() -> {
+                for (int i = 0; i < count; i++)
+                    time[i] = stamp.applyAsLong(tp);
+            });
+            ts[t].start();
+        }
+        Set<Long> all = new HashSet<>();
+        for (int t = 0; t < threads; t++) {
+            ts[t].join();
+            for (int i = 0; i < count; i++) {
+                if (i > 0)
+                    assertTrue(times[t][i] > times[t][i - 1]);
+                all.add(times[t][i]);
+            }
+        }
+        assertEquals(threads * count, all.size());
+    }
+
+    @Test
+    public void withinABlockOfTheClock() throws InterruptedException {
+        // a clock which advances faster than the timestamps are taken
+        AtomicLong clock = new AtomicLong(1_000_000);
+        TimeProvider ticking = new SetTimeProvider() {
+            @Override
+            public long currentTimeMicros() {
+                return clock.addAndGet(4);
+            }
+
+            @Override
+            public long currentTimeNanos() {
+                return clock.addAndGet(4);
+            }
+        };
+        int blockSize = 64, threads = 4, count = 100_000;
+        TimeProvider tp = provider(create.apply(blockSize), ticking);
+        AssertionError[] failed = {null};
+        Thread[] ts = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            ts[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        long before = clock.get();
+                        long time = stamp.applyAsLong(tp);
+                        long after = clock.get();
+                        assertTrue(time > before);
+                        // a thread with a stale time can be given one past the last block reserved
+                        assertTrue(time + " is too far ahead of " + after, time < after + blockSize + threads);
+                    }
+                } catch (AssertionError e) {
+                    failed[0] = e;
+                }
+            });
+            ts[t].start();
+        }
+        for (Thread t : ts)
+            t.join();
+        if (failed[0] != null)
+            throw failed[0];
+    }
+
+    @Test
+    public void providerStartsAgain() {
+        TimeProvider tp = provider(create.apply(16), new SetTimeProvider(1_000_000_000));
+        long first = stamp.applyAsLong(tp);
+        assertEquals(first + 1, stamp.applyAsLong(tp));
+
+        // the timestamps are repeated as the blocks reserved are discarded
+        provider(tp, new SetTimeProvider(1_000_000_000));
+        assertEquals(first, stamp.applyAsLong(tp));
+        assertEquals(first + 1, stamp.applyAsLong(tp));
+    }
+}
@@ -0,0 +1,131 @@
+package net.openhft.chronicle.core.time;
+
+import net.openhft.chronicle.core.OS;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RecordingTimeProviderTest {
+
+    @Test
+    public void recordAndReplay() throws IOException {
+        File file = new File(OS.getTarget(), "RecordingTimeProviderTest-" + System.nanoTime());
+        SetTimeProvider stp = new SetTimeProvider(1_000_000_000L).autoIncrement(1_234, TimeUnit.NANOSECONDS);
+        long[] expected = new long[3];
+        try {
+            try (RecordingTimeProvider recording = RecordingTimeProvider.open(file, 16).provider(stp)) {
+                expected[0] = recording.currentTimeNanos();
+                expected[1] = recording.currentTimeMicros();
+                expected[2] = recording.currentTimeMillis();
+                assertEquals(3, recording.count());
+
+                ReplayTimeProvider replay = recording.replay();
+                assertEquals(expected[0], replay.currentTimeNanos());
+                assertEquals(expected[1], replay.currentTimeMicros());
+                assertEquals(expected[2], replay.currentTimeMillis());
+                assertEquals(0, replay.remaining());
+            }
+
+            ReplayTimeProvider replay = ReplayTimeProvider.load(file);
+            assertEquals(3, replay.size());
+            assertEquals(expected[0], replay.currentTimeNanos());
+            assertEquals(expected[1], replay.currentTimeMicros());
+            assertEquals(expected[2], replay.currentTimeMillis());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void keepsTheLatest() throws IOException {
+        File file = new File(OS.getTarget(), "RecordingTimeProviderTest-" + System.nanoTime());
+        SetTimeProvider stp = new SetTimeProvider(0).autoIncrement(1, TimeUnit.NANOSECONDS);
+        try {
+            try (RecordingTimeProvider recording = RecordingTimeProvider.open(file, 8).provider(stp)) {
+                for (int i = 0; i < 20; i++)
+                    recording.currentTimeNanos();
+                assertEquals(20, recording.count());
+                assertArrayEquals(new long[]{12, 13, 14, 15, 16, 17, 18, 19}, recording.times());
+            }
+            assertArrayEquals(new long[]{12, 13, 14, 15, 16, 17, 18, 19}, replayAll(ReplayTimeProvider.load(file)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void recordsFromManyThreads() throws IOException, InterruptedException {
+        File file = new File(OS.getTarget(), "RecordingTimeProviderTest-" + System.nanoTime());
+        // every time is unique, so a lost time would show up as a missing value
+        SetTimeProvider stp = new SetTimeProvider(0).autoIncrement(1, TimeUnit.NANOSECONDS);
+        int threads = 4, count = 10_000;
+        try {
+            try (RecordingTimeProvider recording = RecordingTimeProvider.open(file, 1 << 16).provider(stp)) {
+                Thread[] ts = new Thread[threads];
+                for (int t = 0; t < threads; t++) {
+                    ts[t] = new Thread(() -> {
+                        for (int i = 0; i < count; i++)
+                            recording.currentTimeNanos();
+                    });
+                    ts[t].start();
+                }
+                for (Thread t : ts)
+                    t.join();
+                assertEquals(threads * count, recording.count());
+            }
+            long[] times = replayAll(ReplayTimeProvider.load(file));
+            Arrays.sort(times);
+            for (int i = 0; i < times.length; i++)
+                assertEquals(i, times[i]);
+            assertEquals(threads * count, times.length);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void replayedAll() {
+        ReplayTimeProvider replay = new ReplayTimeProvider(new long[]{1});
+        replay.currentTimeNanos();
+        replay.currentTimeNanos();
+    }
+
+    @Test
+    public void invalidCapacity() throws IOException {
+        File file = new File(OS.getTarget(), "RecordingTimeProviderTest-" + System.nanoTime());
+        try {
+            RecordingTimeProvider.open(file, 8).close();
+            for (long capacity : new long[]{0, -8, 6, 1L << 40}) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.getChannel().write(ByteBuffer.allocate(8).order(ByteOrder.nativeOrder()).putLong(0, capacity),
+                            RecordingTimeProvider.CAPACITY);
+                }
+                try {
+                    ReplayTimeProvider.load(file);
+                    fail("capacity: " + capacity);
+                } catch (IllegalArgumentException expected) {
+                    // expected
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    static long[] replayAll(ReplayTimeProvider replay) {
+        long[] times = new long[replay.remaining()];
+        for (int i = 0; i < times.length; i++)
+            times[i] = replay.currentTimeNanos();
+        return times;
+    }
+}
@@ -0,0 +1,68 @@
+package net.openhft.chronicle.core.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveHistogramTest {
+
+    @Test
+    public void sameAsHistogram() {
+        Histogram expected = new Histogram();
+        AdaptiveHistogram h = new AdaptiveHistogram();
+        Random rand = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            double value = 1_000 + rand.nextInt(1 << rand.nextInt(20));
+            expected.sample(value);
+            h.sample(value);
+        }
+        expected.sample(0.5);
+        h.sample(0.5);
+        expected.sample(1e20);
+        h.sample(1e20);
+
+        Histogram actual = h.toHistogram();
+        assertEquals(expected, actual);
+        assertEquals(expected.totalCount(), actual.totalCount());
+        assertEquals(expected.overRange(), actual.overRange());
+        assertEquals(expected.percentile(0.99), actual.percentile(0.99), 0);
+    }
+
+    @Test
+    public void compact() {
+        AdaptiveHistogram h = new AdaptiveHistogram();
+        for (int i = 1 << 10; i < 1 << 20; i += 5_000)
+            h.sampleNanos(i);
+        // 10 powers of 2 of 128 buckets
+        assertEquals(1280, h.countersSize());
+
+        for (int i = 0; i < 300; i++)
+            h.sampleNanos(2_000);
+        assertEquals(1280 * 5, h.countersSize());
+        assertEquals(300, h.count(Histogram.bucketFor(2_000, 7, Histogram.floorFor(1.0, 7))));
+        assertTrue(h.countersSize() < new Histogram().sampleCount().length * 4 / 3);
+
+        h.reset();
+        assertEquals(0, h.toHistogram().totalCount());
+        assertEquals(1280 * 5, h.countersSize());
+    }
+
+    @Test
+    public void add() {
+        Histogram h = new Histogram(20, 5);
+        for (int i = 1; i < 100_000; i++)
+            h.sample(i);
+        h.sample(0.1);
+        AdaptiveHistogram a = new AdaptiveHistogram(20, 5);
+        a.add(h);
+        a.add(h);
+        Histogram h2 = new Histogram(20, 5);
+        h2.add(h);
+        h2.add(h);
+        assertEquals(h2, a.toHistogram());
+        assertEquals(h2.totalCount(), a.totalCount());
+    }
+}
@@ -0,0 +1,51 @@
+package net.openhft.chronicle.core.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConcurrentHistogramTest {
+
+    @Test
+    public void sameAsHistogram() {
+        ConcurrentHistogram ch = new ConcurrentHistogram(7, 5);
+        Histogram h = new Histogram(7, 5);
+        for (int i = 0; i <= 200; i++) {
+            assertEquals(h.sample(i), ch.sample(i));
+        }
+        Histogram snapshot = ch.snapshot();
+        assertEquals(h, snapshot);
+        assertEquals(h.totalCount(), snapshot.totalCount());
+        assertEquals(h.overRange(), snapshot.overRange());
+        assertEquals(h.percentile(0.5), snapshot.percentile(0.5), 0);
+        assertEquals(h.percentile(0.99), snapshot.percentile(0.99), 0);
+        assertEquals(h.percentile(0), snapshot.percentile(0), 0);
+    }
+
+    @Test
+    public void noLostUpdates() throws InterruptedException {
+        // fewer stripes than threads so they contend
+        ConcurrentHistogram ch = new ConcurrentHistogram(20, 4, 1.0, 2);
+        List<Thread> threads = new ArrayList<>();
+        int perThread = 100_000;
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++)
+                    ch.sampleNanos(1000 + (i & 1023));
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long taken = 0;
+        for (int i = 0; i < 10; i++)
+            taken += ch.snapshotAndReset().totalCount();
+        for (Thread thread : threads)
+            thread.join();
+        Histogram last = ch.snapshotAndReset();
+        assertEquals(8 * perThread, taken + last.totalCount());
+        assertEquals(0, ch.totalCount());
+    }
+}
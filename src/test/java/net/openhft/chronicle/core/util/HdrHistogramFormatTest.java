@@ -0,0 +1,187 @@
+package net.openhft.chronicle.core.util;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class HdrHistogramFormatTest {
+
+    @Test
+    public void encoding() {
+        Histogram h = new Histogram(10, 0);
+        h.sample(1);
+        ByteBuffer bb = ByteBuffer.allocate(HdrHistogramFormat.maxEncodedLength(h));
+        assertEquals(42, HdrHistogramFormat.encode(h, bb));
+        bb.flip();
+        assertEquals(HdrHistogramFormat.V2_ENCODING_COOKIE, bb.getInt());
+        assertEquals(2, bb.getInt()); // payload length
+        assertEquals(0, bb.getInt()); // normalizing index offset
+        assertEquals(0, bb.getInt()); // significant digits
+        assertEquals(1, bb.getLong()); // lowest discernible value
+        assertEquals(1024, bb.getLong()); // highest trackable value
+        assertEquals(1.0, bb.getDouble(), 0);
+        // the bucket [1, 2) is counted as 2, index 2 after a run of 2 empty counts.
+        assertEquals(3, bb.get());
+        assertEquals(2, bb.get());
+    }
+
+    /**
+     * The V2 encoding the HdrHistogram library writes for <code>new Histogram(3_600_000_000L, 3)</code> after
+     * recordValue(1), recordValueWithCount(1000, 2) and recordValueWithCount(5000, 3), assembled from its format.
+     */
+    static final byte[] HDR_HISTOGRAM_V2 = {
+            0x1c, (byte) 0x84, (byte) 0x93, 0x13, // cookie
+            0, 0, 0, 8, // payload length
+            0, 0, 0, 0, // normalizing index offset
+            0, 0, 0, 3, // significant digits
+            0, 0, 0, 0, 0, 0, 0, 1, // lowest discernible value
+            0, 0, 0, 0, (byte) 0xd6, (byte) 0x93, (byte) 0xa4, 0x00, // highest trackable value
+            0x3f, (byte) 0xf0, 0, 0, 0, 0, 0, 0, // integer to double value conversion ratio 1.0
+            0x00, // index 0 is empty
+            0x02, // index 1 has a count of 1
+            (byte) 0xcb, 0x0f, // 998 empty indexes
+            0x04, // index 1000 has a count of 2
+            (byte) 0xf1, 0x23, // 2297 empty indexes
+            0x06, // index 3298, the bucket [5000, 5004), has a count of 3
+    };
+
+    @Test
+    public void decodesHdrHistogram() {
+        Histogram expected = new Histogram(32, 7);
+        expected.sample(1);
+        expected.sample(1000, 2, 0);
+        // the middle of the bucket
+        expected.sample(5002, 3, 0);
+
+        Histogram h = HdrHistogramFormat.decode(ByteBuffer.wrap(HDR_HISTOGRAM_V2), new Histogram(32, 7));
+        assertEquals(6, h.totalCount());
+        assertArrayEquals(expected.sampleCount(), h.sampleCount());
+
+        // the compressed form is a deflated V2 encoding after its own cookie and length
+        Deflater deflater = new Deflater();
+        deflater.setInput(HDR_HISTOGRAM_V2);
+        deflater.finish();
+        byte[] deflated = new byte[256];
+        int length = deflater.deflate(deflated);
+        deflater.end();
+        ByteBuffer compressed = ByteBuffer.allocate(8 + length)
+                .putInt(0x1c849314)
+                .putInt(length)
+                .put(deflated, 0, length);
+        compressed.flip();
+        Histogram h2 = HdrHistogramFormat.decode(compressed, new Histogram(32, 7));
+        assertArrayEquals(expected.sampleCount(), h2.sampleCount());
+    }
+
+    @Test
+    public void significantDigits() {
+        ByteBuffer bb = ByteBuffer.allocate(1 << 16);
+        int[] expected = {0, 1, 1, 1, 1, 2, 2, 2, 3, 3};
+        for (int fractionBits = 0; fractionBits < expected.length; fractionBits++) {
+            bb.clear();
+            HdrHistogramFormat.encode(new Histogram(10, fractionBits), bb);
+            assertEquals(expected[fractionBits], bb.getInt(12));
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        Histogram h = new Histogram(32, 7);
+        Random rand = new Random(1);
+        for (int i = 0; i < 100_000; i++)
+            h.sample(100 + rand.nextInt(1 << rand.nextInt(20)));
+        h.sample(0.5);
+
+        byte[] compressed = HdrHistogramFormat.encodeCompressed(h);
+        assertEquals(HdrHistogramFormat.V2_COMPRESSED_ENCODING_COOKIE, ByteBuffer.wrap(compressed).getInt());
+        assertEquals(compressed.length - 8, ByteBuffer.wrap(compressed).getInt(4));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(compressed.length);
+        direct.put(compressed).flip();
+        Histogram h2 = HdrHistogramFormat.decode(direct, new Histogram(32, 7));
+        assertEquals(0, direct.remaining());
+        assertEquals(h.totalCount(), h2.totalCount());
+        for (double fraction : new double[]{0.5, 0.9, 0.99, 0.999, 1})
+            assertEquals(h.percentile(fraction), h2.percentile(fraction), h.percentile(fraction) / 64);
+    }
+
+    @Test
+    public void emptyAndOverRange() {
+        Histogram h = new Histogram(10, 3);
+        assertEquals(0, HdrHistogramFormat.maxValue(h));
+        assertEquals(0, HdrHistogramFormat.fromBase64(HdrHistogramFormat.toBase64(h), new Histogram()).totalCount());
+
+        h.sample(1e9);
+        assertEquals(1, h.overRange());
+        // the highest value equivalent to the top of the range
+        assertEquals(1087, HdrHistogramFormat.maxValue(h));
+        Histogram h2 = HdrHistogramFormat.fromBase64(HdrHistogramFormat.toBase64(h), new Histogram(10, 3));
+        assertEquals(1, h2.totalCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notV2() {
+        HdrHistogramFormat.decode(ByteBuffer.wrap(new byte[]{0x1c, (byte) 0x84, (byte) 0x93, 0x01, 0, 0, 0, 0}), new Histogram());
+    }
+
+    @Test
+    public void invalidLengths() {
+        byte[] negative = {0x1c, (byte) 0x84, (byte) 0x93, 0x14, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xf0};
+        byte[] tooLong = {0x1c, (byte) 0x84, (byte) 0x93, 0x14, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0};
+        byte[] payloadTooLong = HDR_HISTOGRAM_V2.clone();
+        payloadTooLong[7] = 9;
+        for (byte[] bytes : new byte[][]{negative, tooLong, payloadTooLong}) {
+            try {
+                HdrHistogramFormat.decode(ByteBuffer.wrap(bytes), new Histogram());
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tagWithoutComma() throws IOException {
+        HdrHistogramFormat.readLog(new BufferedReader(new StringReader("Tag=A\n")), Histogram::new, (tag, start, length, histogram) -> {
+        });
+    }
+
+    @Test
+    public void intervalLog() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        HdrHistogramFormat.writeLogHeader(sb, 1_600_000_000_000L);
+        Histogram h = new Histogram(32, 7);
+        for (int i = 1; i <= 1000; i++)
+            h.sample(i * 1000);
+        HdrHistogramFormat.writeLogInterval(sb, null, 0.0, 1.0, h, HdrHistogramFormat.DEFAULT_MAX_VALUE_UNIT_RATIO);
+        HdrHistogramFormat.writeLogInterval(sb, "A", 1.0, 2.0, h, HdrHistogramFormat.DEFAULT_MAX_VALUE_UNIT_RATIO);
+
+        String[] lines = sb.toString().split("\n");
+        assertEquals("#[Histogram log format version 1.3]", lines[0]);
+        assertTrue(lines[1], lines[1].startsWith("#[StartTime: 1600000000.000 (seconds since epoch), "));
+        assertEquals(HdrHistogramFormat.LOG_LEGEND, lines[2]);
+        assertTrue(lines[3], lines[3].startsWith("0.000,1.000,1.00"));
+        assertTrue(lines[4], lines[4].startsWith("Tag=A,1.000,1.000,1.00"));
+
+        List<String> tags = new ArrayList<>();
+        List<Histogram> histograms = new ArrayList<>();
+        int count = HdrHistogramFormat.readLog(new BufferedReader(new StringReader(sb.toString())), Histogram::new, (tag, start, length, histogram) -> {
+            tags.add(tag);
+            histograms.add(histogram);
+            assertEquals(1.0, length, 0);
+        });
+        assertEquals(2, count);
+        assertEquals("[null, A]", tags.toString());
+        assertEquals(1000, histograms.get(1).totalCount());
+        assertEquals(h.percentile(0.99), histograms.get(1).percentile(0.99), 1e4);
+    }
+}
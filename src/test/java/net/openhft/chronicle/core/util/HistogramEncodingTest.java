@@ -0,0 +1,131 @@
+package net.openhft.chronicle.core.util;
+
+import net.openhft.chronicle.core.OS;
+import org.junit.Test;
+import sun.misc.Unsafe;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HistogramEncodingTest {
+
+    private static Histogram sampled() {
+        Histogram h = new Histogram(32, 5, 10.0);
+        Random rand = new Random(1);
+        for (int i = 0; i < 10_000; i++)
+            h.sample(20 + rand.nextInt(2000));
+        h.sample(1);
+        h.sample(1e12);
+        return h;
+    }
+
+    @Test
+    public void heapBuffer() {
+        Histogram h = sampled();
+        ByteBuffer bb = ByteBuffer.allocate(HistogramEncoding.maxEncodedLength(h));
+        bb.position(3);
+        int length = HistogramEncoding.encode(h, bb);
+        assertEquals(3 + length, bb.position());
+        assertTrue(length < 400);
+
+        bb.flip().position(3);
+        Histogram h2 = new Histogram(10, 1);
+        h2.sample(5);
+        assertEquals(length, HistogramEncoding.decode(bb, h2));
+        assertEquals(h, h2);
+        assertEquals(h.totalCount(), h2.totalCount());
+        assertEquals(h.overRange(), h2.overRange());
+        assertEquals(h.floor(), h2.floor());
+        assertEquals(h.percentile(0.99), h2.percentile(0.99), 0);
+    }
+
+    @Test
+    public void directBufferAndNativeMemory() {
+        Histogram h = sampled();
+        ByteBuffer bb = ByteBuffer.allocateDirect(1024);
+        int length = HistogramEncoding.encode(h, bb);
+
+        long address = OS.memory().allocate(length);
+        try {
+            assertEquals(length, HistogramEncoding.encode(h, address, length));
+            Histogram h2 = new Histogram();
+            assertEquals(length, HistogramEncoding.decode(address, length, h2));
+            assertEquals(h, h2);
+        } finally {
+            OS.memory().freeMemory(address, length);
+        }
+    }
+
+    @Test
+    public void empty() {
+        Histogram h = new Histogram();
+        ByteBuffer bb = ByteBuffer.allocate(64);
+        assertTrue(HistogramEncoding.encode(h, bb) < 16);
+        bb.flip();
+        Histogram h2 = sampled();
+        HistogramEncoding.decode(bb, h2);
+        assertEquals(h, h2);
+        assertEquals(0, h2.totalCount());
+    }
+
+    @Test
+    public void tooSmall() {
+        Histogram h = sampled();
+        ByteBuffer bb = ByteBuffer.allocate(16);
+        try {
+            HistogramEncoding.encode(h, bb);
+            fail();
+        } catch (BufferOverflowException expected) {
+            assertEquals(0, bb.position());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongVersion() {
+        HistogramEncoding.decode(ByteBuffer.wrap(new byte[]{2, 1, 1, 0, 0, 0, 0}), new Histogram());
+    }
+
+    @Test
+    public void invalidHeaders() {
+        byte[][] headers = {
+                // 64 powers of 2 with 20 fraction bits is too many buckets
+                {1, 64, 20, 0, 0, 0, 0},
+                // 2^32 + 8 powers of 2 is not 8
+                {1, (byte) 0x88, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10, 7, 0, 0, 0, 0},
+                // more buckets used than there are
+                {1, 8, 2, 0, 0, 0, 33, 2},
+                // more over range than samples
+                {1, 8, 2, 0, 1, 2, 0},
+        };
+        for (byte[] header : headers) {
+            try {
+                HistogramEncoding.decode(ByteBuffer.wrap(header), new Histogram());
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void moreBucketsThanBytes() {
+        // 300 buckets can't be encoded in 2 bytes
+        HistogramEncoding.decode(ByteBuffer.wrap(new byte[]{1, 10, 5, 0, 2, 0, (byte) 0xac, 0x02, 0x7f, 0x02}), new Histogram());
+    }
+
+    @Test
+    public void varLongs() {
+        byte[] bytes = new byte[10];
+        long start = Unsafe.ARRAY_BYTE_BASE_OFFSET;
+        for (long value : new long[]{0, 1, 127, 128, 1L << 35, Long.MAX_VALUE, -1, Long.MIN_VALUE}) {
+            long end = HistogramEncoding.writeVarLong(bytes, start, start + 10, value);
+            assertEquals(HistogramEncoding.varLongLength(value), end - start);
+            assertEquals(value, HistogramEncoding.readVarLong(bytes, start, start + 10));
+            assertEquals(value, HistogramEncoding.unZigZag(HistogramEncoding.zigZag(value)));
+        }
+    }
+}
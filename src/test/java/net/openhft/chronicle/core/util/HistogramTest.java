@@ -18,10 +18,16 @@
 
 package net.openhft.chronicle.core.util;
 
+import net.openhft.chronicle.core.OS;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class HistogramTest {
 
@@ -80,4 +86,130 @@ public class HistogramTest {
         }
 //        }
     }*/
-}
\ No newline at end of file
+
+    @Test
+    public void sampleWithExpectedInterval() {
+        Histogram h = new Histogram(32, 7);
+        for (int i = 0; i < 99; i++)
+            h.sampleWithExpectedInterval(1_000, 10_000);
+        // a 1 ms stall in a test run every 10 us hides 99 samples
+        h.sampleWithExpectedInterval(1_000_000, 10_000);
+        assertEquals(199, h.totalCount());
+        assertEquals(500_000, h.percentile(0.75), 20_000);
+        assertEquals(1_000_000, h.max(), 5_000);
+    }
+
+    @Test
+    public void copyCorrectedForCoordinatedOmission() {
+        Histogram h = new Histogram(32, 7);
+        for (int i = 0; i < 99; i++)
+            h.sample(1_000);
+        h.sample(1_000_000);
+        h.sample(0.5);
+        assertEquals(1_000, h.percentile(0.99), 10);
+
+        Histogram expected = new Histogram(32, 7);
+        for (int i = 0; i < 99; i++)
+            expected.sampleWithExpectedInterval(1_000, 10_000);
+        expected.sampleWithExpectedInterval(1_000_000, 10_000);
+        expected.sample(0.5);
+
+        Histogram corrected = h.copyCorrectedForCoordinatedOmission(10_000);
+        assertEquals(expected.totalCount(), corrected.totalCount());
+        assertEquals(expected.percentile(0.75), corrected.percentile(0.75), 5_000);
+        assertEquals(h, h.copy());
+        assertEquals(h.totalCount(), h.copy().totalCount());
+    }
+
+    @Test
+    public void appendFormats() {
+        Histogram h = new Histogram(32, 7);
+        Random rand = new Random(1);
+        for (int i = 0; i < 100_000; i++)
+            h.sample(50 + rand.nextInt(1 << rand.nextInt(24)));
+        assertEquals("50/90 99/99.9 99.99 - worst was 1.1 / 895  6,340 / 8,180  8,370 - 8,370",
+                h.toMicrosFormat());
+        assertEquals(h.toMicrosFormat(), h.appendMicrosFormat(new StringBuilder()).toString());
+        assertEquals(h.toLongMicrosFormat(), h.appendLongMicrosFormat(new StringBuilder()).toString());
+
+        String expected = h.toLongMicrosFormat();
+        long address = OS.memory().allocate(256);
+        try {
+            long end = h.appendLongMicrosFormat(address, Histogram.NANOS_TO_MICROS);
+            StringBuilder sb = new StringBuilder();
+            for (long a = address; a < end; a++)
+                sb.append((char) OS.memory().readByte(a));
+            assertEquals(expected, sb.toString());
+        } finally {
+            OS.memory().freeMemory(address, 256);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        Histogram h = new Histogram(20, 5);
+        for (int i = 1; i <= 10_000; i++)
+            h.sample(i);
+        h.sample(1e9);
+        double[] fractions = {0, 0.1, 0.5, 0.9, 0.99, 0.9999, 1};
+        double[] values = new double[fractions.length];
+        h.percentiles(fractions, values);
+        for (int i = 0; i < fractions.length; i++)
+            assertEquals(h.percentile(fractions[i]), values[i], 0);
+        assertArrayEquals(values, h.getPercentiles(fractions), 0);
+        assertEquals(Double.POSITIVE_INFINITY, values[6], 0);
+
+        double[] unordered = {0.99, 0.5, 0};
+        double[] values2 = new double[unordered.length];
+        h.percentiles(unordered, values2);
+        for (int i = 0; i < unordered.length; i++)
+            assertEquals(h.percentile(unordered[i]), values2[i], 0);
+    }
+
+    @Test
+    public void percentilesUpdatedBySamples() {
+        percentilesUpdatedBySamples(false);
+        percentilesUpdatedBySamples(true);
+    }
+
+    private void percentilesUpdatedBySamples(boolean cachePercentiles) {
+        Histogram h = new Histogram(20, 5).cachePercentiles(cachePercentiles);
+        for (int i = 1; i <= 100; i++)
+            h.sample(i);
+        double[] fractions = {0.99, 0.5, 0};
+        double[] values = new double[3];
+        h.percentiles(fractions, values);
+        assertArrayEquals(new double[]{99, 50, 1}, values, 1);
+
+        h.sample(0.5);
+        for (int i = 0; i < 100; i++)
+            h.sample(1000);
+        h.percentiles(fractions, values);
+        assertArrayEquals(new double[]{1000, 100, 1}, values, 16);
+
+        h.sampleCount()[0] = 0;
+        assertEquals(2, h.min(), 0.1);
+        h.reset();
+        assertEquals(1, h.max(), 0);
+    }
+
+    @Test
+    public void appendDoesNotAllocate() {
+        Histogram h = new Histogram(32, 7);
+        for (int i = 1; i <= 10_000; i++)
+            h.sample(i * 10);
+        StringBuilder sb = new StringBuilder(256);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < 2; i++) {
+            long before = threadMXBean.getThreadAllocatedBytes(id);
+            for (int j = 0; j < 1000; j++) {
+                sb.setLength(0);
+                h.appendLongMicrosFormat(sb);
+            }
+            long allocated = threadMXBean.getThreadAllocatedBytes(id) - before;
+            if (i == 1)
+                assertTrue("allocated " + allocated, allocated < 1000);
+        }
+    }
+}
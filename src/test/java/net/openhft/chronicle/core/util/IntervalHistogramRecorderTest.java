@@ -0,0 +1,54 @@
+package net.openhft.chronicle.core.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+public class IntervalHistogramRecorderTest {
+
+    @Test
+    public void intervals() {
+        IntervalHistogramRecorder recorder = new IntervalHistogramRecorder(20, 5);
+        for (int i = 1; i <= 100; i++)
+            recorder.sampleNanos(i);
+        Histogram h1 = recorder.getIntervalHistogram();
+        assertEquals(100, h1.totalCount());
+        assertEquals(101, h1.percentile(1), 0);
+
+        for (int i = 1; i <= 10; i++)
+            recorder.sampleNanos(1000);
+        Histogram h2 = recorder.getIntervalHistogram();
+        assertEquals(10, h2.totalCount());
+        assertEquals(1000, h2.percentile(0.5), 16);
+        assertEquals(110, recorder.cumulativeCount());
+        assertEquals(110, recorder.cumulativeHistogram().totalCount());
+
+        assertEquals(0, recorder.getIntervalHistogram().totalCount());
+    }
+
+    @Test
+    public void noSamplesLost() throws InterruptedException {
+        IntervalHistogramRecorder recorder = new IntervalHistogramRecorder(20, 5);
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] written = {0};
+        Thread writer = new Thread(() -> {
+            long count = 0;
+            while (running.get()) {
+                recorder.sampleNanos(100 + (count & 255));
+                count++;
+            }
+            written[0] = count;
+        });
+        writer.start();
+        long read = 0;
+        for (int i = 0; i < 100; i++)
+            read += recorder.getIntervalHistogram().totalCount();
+        running.set(false);
+        writer.join();
+        read += recorder.getIntervalHistogram().totalCount();
+        assertEquals(written[0], read);
+        assertEquals(written[0], recorder.cumulativeCount());
+    }
+}
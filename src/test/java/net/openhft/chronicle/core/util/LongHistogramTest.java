@@ -0,0 +1,136 @@
+package net.openhft.chronicle.core.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LongHistogramTest {
+
+    @Test
+    public void sameAsHistogram() {
+        Histogram expected = new Histogram();
+        LongHistogram h = new LongHistogram();
+        Random rand = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            double value = 1_000 + rand.nextInt(1 << rand.nextInt(20));
+            expected.sample(value);
+            h.sample(value);
+        }
+        expected.sample(0.5);
+        h.sample(0.5);
+        expected.sample(1e20);
+        h.sample(1e20);
+
+        assertEquals(expected, h);
+        assertEquals(expected.totalCount(), h.totalCount());
+        assertEquals(expected.overRange(), h.overRange());
+        assertEquals(expected.toMicrosFormat(), h.toMicrosFormat());
+        double[] fractions = {0.5, 0.9, 0.99, 0.999, 1};
+        double[] expectedPercentiles = new double[fractions.length];
+        double[] percentiles = new double[fractions.length];
+        expected.percentiles(fractions, expectedPercentiles);
+        h.percentiles(fractions, percentiles);
+        for (int i = 0; i < fractions.length; i++)
+            assertEquals(expectedPercentiles[i], percentiles[i], 0);
+    }
+
+    @Test
+    public void countsBeyondIntegerMaxValue() {
+        long many = 3L * Integer.MAX_VALUE;
+        LongHistogram h = new LongHistogram(32, 7);
+        h.sample(1_000, many, 0);
+        h.sample(100_000, many, 0);
+        h.sample(10_000_000);
+
+        int bucket = Histogram.bucketFor(1_000, h.fractionBits(), h.floor());
+        assertEquals(many, h.count(bucket));
+        assertEquals(2 * many + 1, h.totalCount());
+        assertEquals(1_000, h.percentile(0.25), 1_000 / 128.0);
+        assertEquals(100_000, h.percentile(0.75), 100_000 / 128.0);
+        assertEquals(10_000_000, h.percentile(1), 10_000_000 / 128.0);
+
+        // a Histogram can't hold these counts
+        Histogram small = new Histogram(32, 7);
+        small.sample(1_000);
+        try {
+            small.add(h);
+            fail();
+        } catch (ArithmeticException expected) {
+            assertEquals(1, small.totalCount());
+            assertEquals(1, small.count(bucket));
+        }
+
+        LongHistogram sum = new LongHistogram(32, 7);
+        sum.add(h);
+        sum.add(h);
+        assertEquals(2 * many, sum.count(bucket));
+        assertEquals(4 * many + 2, sum.totalCount());
+    }
+
+    @Test
+    public void encodings() {
+        LongHistogram h = new LongHistogram(32, 7);
+        h.sample(1_000, 5L * Integer.MAX_VALUE, 0);
+        for (int i = 1; i < 10_000; i += 7)
+            h.sample(i * 100);
+
+        ByteBuffer bb = ByteBuffer.allocate(HistogramEncoding.maxEncodedLength(h));
+        HistogramEncoding.encode(h, bb);
+        bb.flip();
+        LongHistogram decoded = new LongHistogram(32, 7);
+        HistogramEncoding.decode(bb, decoded);
+        assertEquals(h, decoded);
+        assertEquals(h.totalCount(), decoded.totalCount());
+
+        bb.rewind();
+        try {
+            HistogramEncoding.decode(bb, new Histogram(32, 7));
+            fail();
+        } catch (ArithmeticException expected) {
+            // too large for an int count
+        }
+
+        LongHistogram hdr = new LongHistogram(32, 7);
+        HdrHistogramFormat.fromBase64(HdrHistogramFormat.toBase64(h), hdr);
+        assertEquals(h.totalCount(), hdr.totalCount());
+        assertEquals(h.percentile(0.5), hdr.percentile(0.5), 1_000 / 64.0);
+    }
+
+    @Test
+    public void coordinatedOmission() {
+        LongHistogram h = new LongHistogram(32, 7);
+        h.sampleWithExpectedInterval(10_000, 1_000);
+        assertEquals(10, h.totalCount());
+        Histogram copy = h.copyCorrectedForCoordinatedOmission(1_000);
+        assertTrue(copy instanceof LongHistogram);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void sampleCountIsASaturatedCopy() {
+        LongHistogram h = new LongHistogram(32, 7);
+        h.sample(1_000, 3L * Integer.MAX_VALUE, 0);
+        h.sample(100_000);
+        int bucket = Histogram.bucketFor(1_000, h.fractionBits(), h.floor());
+        int[] sampleCount = h.sampleCount();
+        assertEquals(Integer.MAX_VALUE, sampleCount[bucket]);
+        assertEquals(1, sampleCount[Histogram.bucketFor(100_000, h.fractionBits(), h.floor())]);
+        sampleCount[bucket] = 0;
+        assertEquals(3L * Integer.MAX_VALUE, h.count(bucket));
+    }
+
+    @Test
+    public void snapshotsHaveLongCounts() {
+        ConcurrentHistogram ch = new ConcurrentHistogram(32, 7);
+        ch.sample(1_000);
+        assertTrue(ch.snapshot() instanceof LongHistogram);
+        AdaptiveHistogram ah = new AdaptiveHistogram();
+        ah.sample(1_000);
+        assertTrue(ah.toHistogram() instanceof LongHistogram);
+    }
+}
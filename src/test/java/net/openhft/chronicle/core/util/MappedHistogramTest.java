@@ -0,0 +1,76 @@
+package net.openhft.chronicle.core.util;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.IOTools;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedHistogramTest {
+
+    @Test
+    public void sharedBetweenMappings() throws IOException, InterruptedException {
+        File file = new File(OS.getTarget(), "MappedHistogramTest-" + System.nanoTime());
+        try (MappedHistogram h1 = MappedHistogram.open(file, 20, 5, 1.0);
+             MappedHistogram h2 = MappedHistogram.open(file, 20, 5, 1.0);
+             MappedHistogram monitor = MappedHistogram.open(file)) {
+            Histogram expected = new Histogram(20, 5);
+            for (int i = 1; i <= 1000; i++)
+                expected.sample(i);
+            for (int i = 1; i <= 1000; i++)
+                expected.sample(i);
+
+            Thread t = new Thread(() -> {
+                for (int i = 1; i <= 1000; i++)
+                    h2.sample(i);
+            });
+            t.start();
+            for (int i = 1; i <= 1000; i++)
+                h1.sample(i);
+            t.join();
+
+            assertEquals(2000, monitor.totalCount());
+            Histogram snapshot = monitor.snapshot();
+            assertEquals(expected, snapshot);
+            assertEquals(expected.percentile(0.99), snapshot.percentile(0.99), 0);
+
+            assertEquals(2000, h1.snapshotAndReset().totalCount());
+            assertEquals(0, h2.totalCount());
+        } finally {
+            IOTools.deleteDirWithFiles(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void differentSettings() throws IOException {
+        File file = new File(OS.getTarget(), "MappedHistogramTest-" + System.nanoTime());
+        try (MappedHistogram h1 = MappedHistogram.open(file, 20, 5, 1.0)) {
+            MappedHistogram.open(file, 20, 4, 1.0);
+        } finally {
+            IOTools.deleteDirWithFiles(file);
+        }
+    }
+
+    @Test
+    public void takesOverAnAbandonedHeader() throws IOException {
+        File file = new File(OS.getTarget(), "MappedHistogramTest-" + System.nanoTime());
+        // as left by a process which died writing the header
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.getChannel().write(ByteBuffer.allocate(8).order(ByteOrder.nativeOrder()).putLong(0, MappedHistogram.INITIALISING | 1234), 0);
+        }
+        try (MappedHistogram h = MappedHistogram.open(file, 20, 5, 1.0, 100)) {
+            h.sample(10);
+            try (MappedHistogram monitor = MappedHistogram.open(file)) {
+                assertEquals(1, monitor.totalCount());
+            }
+        } finally {
+            IOTools.deleteDirWithFiles(file);
+        }
+    }
+}